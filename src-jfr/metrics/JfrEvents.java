@@ -0,0 +1,98 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom Flight Recorder events, so phases show up in a recording next to GC and allocation
+ * Only loaded by name once PhaseMetrics has checked that JFR exists, so nothing here loads on a JVM
+ * without it.
+ * 
+ * This is kept out of src because jdk.jfr isn't in Java 8 before 8u262, or in javac --release 8,
+ * so src builds on any Java 8. Compile it into the same classes with a JDK that has JFR, e.g.
+ * javac -cp out -d out src-jfr/metrics/JfrEvents.java
+ * Without it phases are still timed, they just aren't Flight Recorder events.
+ * 
+ * @author Alex
+ */
+class JfrEvents implements PhaseEvents {
+	
+	@Name("genetics.Phase")
+	@Label("GA Phase")
+	@Category("Genetics")
+	@Description("One phase of a generation")
+	@StackTrace(false)
+	static class PhaseEvent extends Event {
+		@Label("Simulation")
+		String simulation;
+		
+		@Label("Phase")
+		String phase;
+		
+		@Label("Generation")
+		long generation;
+		
+		@Label("Phase Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	}
+	
+	@Name("genetics.Generation")
+	@Label("GA Generation")
+	@Category("Genetics")
+	@Description("A whole generation")
+	@StackTrace(false)
+	static class GenerationEvent extends Event {
+		@Label("Simulation")
+		String simulation;
+		
+		@Label("Generation")
+		long generation;
+		
+		@Label("Generation Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+		
+		@Label("Allocated")
+		@DataAmount(DataAmount.BYTES)
+		long allocated;
+	}
+	
+	/**
+	 * Commits a phase event if phase events are being recorded
+	 */
+	@Override
+	public void phase(String simulation, Phase phase, long generation, long nanos) {
+		PhaseEvent e = new PhaseEvent();
+		
+		if(e.isEnabled()) {
+			e.simulation = simulation;
+			e.phase = phase.name();
+			e.generation = generation;
+			e.time = nanos;
+			e.commit();
+		}
+	}
+	
+	/**
+	 * Commits a generation event if generation events are being recorded
+	 */
+	@Override
+	public void generation(String simulation, long generation, long nanos, long allocated) {
+		GenerationEvent e = new GenerationEvent();
+		
+		if(e.isEnabled()) {
+			e.simulation = simulation;
+			e.generation = generation;
+			e.time = nanos;
+			e.allocated = allocated;
+			e.commit();
+		}
+	}
+}
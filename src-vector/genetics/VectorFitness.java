@@ -0,0 +1,78 @@
+package genetics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * LinearOptimizer and PointOptimizer fitness with the Vector API, as many positions at a time as
+ * the CPU's widest registers hold. Every lane does the same operations in the same order as
+ * fitness(x, y), so the fitness is exactly the same.
+ * Only loaded by name once VectorKernels has checked that the Vector API exists.
+ * 
+ * This is kept out of src because jdk.incubator.vector is only in Java 16 and later, and src
+ * builds on Java 8. Compile it into the same classes with a JDK that has it, e.g.
+ * javac --add-modules jdk.incubator.vector -cp out -d out src-vector/genetics/VectorFitness.java
+ * and run with --add-modules jdk.incubator.vector. Without it fitness is one position at a time.
+ * 
+ * @author Alex
+ */
+class VectorFitness implements VectorKernels {
+	
+	static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	
+	@Override
+	public void linear(double[] xs, double[] ys, int start, int end, int[] xLow, int[] xHigh, int height, double[] out) {
+		int i = start,
+			upper = start + SPECIES.loopBound(end - start);
+		
+		for(; i < upper; i += SPECIES.length()) {
+			DoubleVector x = DoubleVector.fromArray(SPECIES, xs, i),
+						 y = DoubleVector.fromArray(SPECIES, ys, i),
+						 fitness = DoubleVector.zero(SPECIES);
+			
+			for(int j = 0; j < xLow.length; j++) {
+				double a = -height,
+					   b = xLow[j] - xHigh[j],
+					   c = (double) height * xHigh[j],
+					   scale = 1 / Math.sqrt((b * b) + (a * a));
+				
+				fitness = fitness.add(x.mul(a).add(y.mul(b)).add(c).abs().mul(scale));
+			}
+			
+			fitness.intoArray(out, i);
+		}
+		
+		// what's left over doesn't fill a vector
+		for(; i < end; i++) {
+			out[i] = LinearOptimizer.fitness(xs[i], ys[i], xLow, xHigh, height);
+		}
+	}
+	
+	@Override
+	public void point(double[] px, double[] py, int start, int end, int[] xs, int[] ys, double maxFitness, double[] out) {
+		int i = start,
+			upper = start + SPECIES.loopBound(end - start);
+		
+		DoubleVector thousand = DoubleVector.broadcast(SPECIES, 1000);
+		
+		for(; i < upper; i += SPECIES.length()) {
+			DoubleVector x = DoubleVector.fromArray(SPECIES, px, i),
+						 y = DoubleVector.fromArray(SPECIES, py, i),
+						 fitness = DoubleVector.zero(SPECIES);
+			
+			for(int j = 0; j < xs.length; j++) {
+				DoubleVector dx = DoubleVector.broadcast(SPECIES, xs[j]).sub(x),
+							 dy = DoubleVector.broadcast(SPECIES, ys[j]).sub(y),
+							 d = dx.mul(dx).add(dy.mul(dy)).sqrt();
+				
+				fitness = fitness.add(thousand.div(d.sqrt()).min(maxFitness));
+			}
+			
+			fitness.intoArray(out, i);
+		}
+		
+		for(; i < end; i++) {
+			out[i] = PointOptimizer.fitness(px[i], py[i], xs, ys, maxFitness);
+		}
+	}
+}
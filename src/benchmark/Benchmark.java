@@ -0,0 +1,70 @@
+package benchmark;
+
+/**
+ * One operation to time, set up fresh for each combination of parameters
+ * Works like a JMH @Benchmark method with @Param fields and a @Setup method
+ * 
+ * @author Alex
+ */
+public abstract class Benchmark {
+	
+	// parameter names, for listing what a benchmark varies
+	public static final String CITIES = "cities",
+							   POPULATION = "population",
+							   THREADS = "threads";
+	
+	final String name;
+	
+	final String[] params;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param name
+	 * @param params names of the parameters this benchmark uses, the others aren't varied
+	 */
+	public Benchmark(String name, String... params) {
+		this.name = name;
+		this.params = params;
+	}
+	
+	/**
+	 * Builds whatever the operation needs. Not timed
+	 * 
+	 * @param cities
+	 * @param population
+	 * @param threads
+	 */
+	public abstract void setup(int cities, int population, int threads);
+	
+	/**
+	 * Runs the operation once
+	 * 
+	 * @return something computed, so the work can't be optimized away
+	 */
+	public abstract double run();
+	
+	/**
+	 * Releases anything setup made, such as thread pools. Not timed
+	 */
+	public void tearDown() {}
+	
+	/**
+	 * @param param
+	 * @return true if this benchmark varies the parameter
+	 */
+	public boolean uses(String param) {
+		for(String p : params) {
+			if(p.equals(param)) return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @return name shown in results
+	 */
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,353 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Runs benchmarks the way JMH does in average time mode: warmup iterations, then measured
+ * iterations, each running the operation over and over for a fixed time. Results are printed as
+ * microseconds per operation with a 99.9% confidence interval.
+ * Like JMH, every combination of parameters runs in fresh JVMs, forked with the same classpath and
+ * JVM options as this one. Otherwise what the JIT learned from one benchmark, such as which
+ * Benchmark.run() it calls, would change the numbers of the next, and results would depend on the
+ * order they ran in. The measured iterations of all forks are combined.
+ * 
+ * Settings are key=value arguments
+ * filter		regex benchmark names have to contain
+ * cities		comma separated values to try
+ * population	comma separated values to try
+ * threads		comma separated values to try
+ * warmup		warmup iterations
+ * iterations	measured iterations
+ * time		milliseconds per iteration
+ * forks		JVMs per combination, 0 to run everything in this one, which is only good for debugging
+ * 
+ * @author Alex
+ */
+public class BenchmarkRunner {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	static final String DEFAULT_CITIES = "50,200,1000",
+						DEFAULT_POPULATION = "100,1000",
+						DEFAULT_THREADS = "1,4";
+	
+	static final int DEFAULT_WARMUP = 3,
+					 DEFAULT_ITERATIONS = 5,
+					 DEFAULT_TIME = 1000,
+					 DEFAULT_FORKS = 2;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	// two sided 99.9% Student's t for 1 to 30 degrees of freedom
+	static final double[] T_999 = {
+		636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+		4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+		3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646
+	};
+	
+	// a forked JVM prints its scores on a line starting with this
+	static final String SCORES = "# scores ";
+	
+	// results go here so the JIT can't throw the work away
+	static volatile double sink;
+	
+	final int warmup,
+			  iterations,
+			  forks;
+	
+	final long iterationNanos;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param warmup warmup iterations
+	 * @param iterations measured iterations
+	 * @param iterationMillis length of each iteration
+	 * @param forks JVMs to run each combination in, 0 for this one
+	 */
+	public BenchmarkRunner(int warmup, int iterations, int iterationMillis, int forks) {
+		this.warmup = warmup;
+		this.iterations = iterations;
+		this.iterationNanos = iterationMillis * 1000000L;
+		this.forks = forks;
+	}
+	
+	/**
+	 * Runs a benchmark with every combination of the parameters it uses and prints a line for each
+	 * 
+	 * @param b
+	 * @param cities
+	 * @param population
+	 * @param threads
+	 */
+	public void run(Benchmark b, int[] cities, int[] population, int[] threads) {
+		// parameters a benchmark doesn't use only get their first value
+		for(int c : b.uses(Benchmark.CITIES) ? cities : first(cities)) {
+			for(int p : b.uses(Benchmark.POPULATION) ? population : first(population)) {
+				for(int t : b.uses(Benchmark.THREADS) ? threads : first(threads)) {
+					double[] scores = forks > 0 ? fork(b, c, p, t) : measure(b, c, p, t);
+					
+					System.out.printf("%-28s %8s %10s %7s  avgt %4d %14.3f +- %10.3f  us/op%n",
+									  b.getName(),
+									  b.uses(Benchmark.CITIES) ? Integer.toString(c) : "-",
+									  b.uses(Benchmark.POPULATION) ? Integer.toString(p) : "-",
+									  b.uses(Benchmark.THREADS) ? Integer.toString(t) : "-",
+									  scores.length, mean(scores), error(scores));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Runs one combination in forks JVMs, one after the other
+	 * 
+	 * @param b
+	 * @param cities
+	 * @param population
+	 * @param threads
+	 * @return microseconds per operation of the measured iterations of every fork
+	 */
+	double[] fork(Benchmark b, int cities, int population, int threads) {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(BenchmarkRunner.class.getName());
+		command.add("fork=" + b.getName());
+		command.add("cities=" + cities);
+		command.add("population=" + population);
+		command.add("threads=" + threads);
+		command.add("warmup=" + warmup);
+		command.add("iterations=" + iterations);
+		command.add("time=" + (iterationNanos / 1000000));
+		
+		double[] scores = new double[forks * iterations];
+		
+		for(int f = 0; f < forks; f++) {
+			double[] forkScores = runFork(command);
+			System.arraycopy(forkScores, 0, scores, f * iterations, iterations);
+		}
+		
+		return scores;
+	}
+	
+	/**
+	 * @param command
+	 * @return scores the forked JVM printed
+	 */
+	double[] runFork(List<String> command) {
+		try {
+			Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			double[] scores = null;
+			
+			try(BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+				String line;
+				
+				while((line = in.readLine()) != null) {
+					if(line.startsWith(SCORES)) scores = doubles(line.substring(SCORES.length()));
+					else System.out.println(line);
+				}
+			}
+			
+			int exit = process.waitFor();
+			if(exit != 0 || scores == null || scores.length != iterations) throw new IllegalStateException("forked JVM failed with exit code " + exit);
+			
+			return scores;
+		} catch(IOException e) {
+			throw new IllegalStateException("couldn't fork a JVM", e);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted waiting for a forked JVM", e);
+		}
+	}
+	
+	/**
+	 * Sets up one combination, runs the warmup and measured iterations, and tears it down
+	 * 
+	 * @param b
+	 * @param cities
+	 * @param population
+	 * @param threads
+	 * @return microseconds per operation of each measured iteration
+	 */
+	double[] measure(Benchmark b, int cities, int population, int threads) {
+		b.setup(cities, population, threads);
+		
+		try {
+			for(int i = 0; i < warmup; i++) iteration(b);
+			
+			double[] scores = new double[iterations];
+			
+			// start each benchmark without garbage from the last one
+			System.gc();
+			
+			for(int i = 0; i < iterations; i++) {
+				scores[i] = iteration(b);
+			}
+			
+			return scores;
+		} finally {
+			b.tearDown();
+		}
+	}
+	
+	/**
+	 * Runs the operation until the iteration time is up
+	 * 
+	 * @param b
+	 * @return microseconds per operation
+	 */
+	double iteration(Benchmark b) {
+		double acc = 0;
+		long ops = 0,
+			 start = System.nanoTime(),
+			 elapsed;
+		
+		do {
+			acc += b.run();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while(elapsed < iterationNanos);
+		
+		sink = acc;
+		
+		return (elapsed / 1000.0) / ops;
+	}
+	
+	static double mean(double[] v) {
+		double sum = 0;
+		for(double x : v) sum += x;
+		
+		return sum / v.length;
+	}
+	
+	/**
+	 * @param v
+	 * @return half width of the 99.9% confidence interval of the mean
+	 */
+	static double error(double[] v) {
+		if(v.length < 2) return Double.NaN;
+		
+		double m = mean(v),
+			   ss = 0;
+		
+		for(double x : v) ss += (x - m) * (x - m);
+		
+		int df = v.length - 1;
+		double t = df <= T_999.length ? T_999[df - 1] : 3.291;
+		
+		return t * Math.sqrt(ss / df) / Math.sqrt(v.length);
+	}
+	
+	static int[] first(int[] values) {
+		return new int[] {values[0]};
+	}
+	
+	static int[] ints(String csv) {
+		String[] parts = csv.split(",");
+		int[] values = new int[parts.length];
+		
+		for(int i = 0; i < parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		
+		return values;
+	}
+	
+	static double[] doubles(String csv) {
+		String[] parts = csv.split(",");
+		double[] values = new double[parts.length];
+		
+		for(int i = 0; i < parts.length; i++) {
+			values[i] = Double.parseDouble(parts[i].trim());
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * Runs one combination for the JVM that forked this one and prints its scores
+	 * 
+	 * @param runner
+	 * @param name
+	 * @param cities
+	 * @param population
+	 * @param threads
+	 */
+	static void runForked(BenchmarkRunner runner, String name, int cities, int population, int threads) {
+		for(Benchmark b : OperatorBenchmarks.all()) {
+			if(!b.getName().equals(name)) continue;
+			
+			double[] scores = runner.measure(b, cities, population, threads);
+			StringBuilder line = new StringBuilder(SCORES);
+			
+			for(int i = 0; i < scores.length; i++) {
+				if(i > 0) line.append(',');
+				line.append(scores[i]);
+			}
+			
+			System.out.println(line);
+			return;
+		}
+		
+		throw new IllegalArgumentException("no benchmark " + name);
+	}
+	
+	// main that runs every benchmark matching the filter
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		
+		Properties config = new Properties();
+		
+		for(String arg : args) {
+			int eq = arg.indexOf('=');
+			if(eq < 0) throw new IllegalArgumentException("expected key=value, got " + arg);
+			
+			config.setProperty(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+		
+		Pattern filter = Pattern.compile(config.getProperty("filter", ""));
+		int[] cities = ints(config.getProperty("cities", DEFAULT_CITIES)),
+			  population = ints(config.getProperty("population", DEFAULT_POPULATION)),
+			  threads = ints(config.getProperty("threads", DEFAULT_THREADS));
+		
+		BenchmarkRunner runner = new BenchmarkRunner(Integer.parseInt(config.getProperty("warmup", Integer.toString(DEFAULT_WARMUP))),
+													 Integer.parseInt(config.getProperty("iterations", Integer.toString(DEFAULT_ITERATIONS))),
+													 Integer.parseInt(config.getProperty("time", Integer.toString(DEFAULT_TIME))),
+													 Integer.parseInt(config.getProperty("forks", Integer.toString(DEFAULT_FORKS))));
+		
+		// this is a forked JVM, run the one combination it was given
+		if(config.getProperty("fork") != null) {
+			runForked(runner, config.getProperty("fork"), cities[0], population[0], threads[0]);
+			return;
+		}
+		
+		List<Benchmark> benchmarks = new ArrayList<>();
+		for(Benchmark b : OperatorBenchmarks.all()) {
+			if(filter.matcher(b.getName()).find()) benchmarks.add(b);
+		}
+		
+		System.out.println("# JVM: " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + ", " + Runtime.getRuntime().availableProcessors() + " cpus");
+		System.out.println("# " + runner.warmup + " warmup, " + runner.iterations + " measured iterations of " + (runner.iterationNanos / 1000000) + " ms, " + (runner.forks > 0 ? runner.forks + " forks" : "not forked"));
+		System.out.printf("%-28s %8s %10s %7s  %4s %4s %14s   %10s  %s%n", "Benchmark", "cities", "population", "threads", "Mode", "Cnt", "Score", "Error", "Units");
+		
+		for(Benchmark b : benchmarks) {
+			runner.run(b, cities, population, threads);
+		}
+	}
+}
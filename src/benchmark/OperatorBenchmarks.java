@@ -0,0 +1,233 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import genetics.LinearOptimizer;
+import genetics.PointOptimizer;
+import genetics.Salesman;
+import genetics.SalesmanSolution;
+import genetics.TspInstance;
+import graphics.APBioSimulation;
+
+/**
+ * Benchmarks of the genetic operators
+ * Cities come from a fixed seed so every run times the same instance
+ * 
+ * @author Alex
+ */
+public class OperatorBenchmarks {
+	
+	// seed for the cities
+	static final long SEED = 42;
+	
+	// lines of the LinearOptimizer benchmarks, targets of the PointOptimizer ones
+	static final int[] X_LOW = {0, 100, 400, 500},
+					   X_HIGH = {100, 0, 500, 400},
+					   TARGET_XS = {150, 350, 250},
+					   TARGET_YS = {300, 300, 200};
+	
+	/**
+	 * Benchmarks one phase of a Salesman generation
+	 */
+	static abstract class SalesmanBenchmark extends Benchmark {
+		
+		Salesman salesman;
+		
+		SalesmanBenchmark(String name) {
+			super(name, CITIES, POPULATION, THREADS);
+		}
+		
+		@Override
+		public void setup(int cities, int population, int threads) {
+			TspInstance instance = TspInstance.random(cities, APBioSimulation.WIDTH, APBioSimulation.HEIGHT, new Random(SEED));
+			
+			salesman = new Salesman(instance, population, Math.min(5, population), 0.5, 0.2);
+			salesman.setThreads(threads);
+			salesman.generateFitness();
+		}
+		
+		@Override
+		public void tearDown() {
+			salesman.setThreads(1);
+			salesman = null;
+		}
+	}
+	
+	/**
+	 * Benchmarks fitness over a whole population of random positions
+	 */
+	static abstract class PositionsBenchmark extends Benchmark {
+		
+		double[] xs, ys, out;
+		
+		PositionsBenchmark(String name) {
+			super(name, POPULATION);
+		}
+		
+		@Override
+		public void setup(int cities, int population, int threads) {
+			Random rand = new Random(SEED);
+			
+			xs = new double[population];
+			ys = new double[population];
+			out = new double[population];
+			
+			for(int i = 0; i < population; i++) {
+				xs[i] = rand.nextDouble() * APBioSimulation.WIDTH;
+				ys[i] = rand.nextDouble() * APBioSimulation.HEIGHT;
+			}
+		}
+	}
+	
+	/**
+	 * @return every operator benchmark
+	 */
+	public static List<Benchmark> all() {
+		List<Benchmark> list = new ArrayList<>();
+		
+		list.add(new SalesmanBenchmark("Salesman.generateFitness") {
+			@Override
+			public double run() {
+				// every tour has to be walked, not skipped as already evaluated
+				salesman.getPopulation().invalidate();
+				salesman.generateFitnessParallel();
+				
+				return salesman.getPopulation().getFitness(0);
+			}
+		});
+		
+		list.add(new SalesmanBenchmark("Salesman.select") {
+			@Override
+			public double run() {
+				salesman.select();
+				
+				return salesman.getPopulation().getFitness(0);
+			}
+		});
+		
+		list.add(new SalesmanBenchmark("Salesman.cross") {
+			@Override
+			public double run() {
+				salesman.cross();
+				
+				return salesman.getPopulation().getFitness(0);
+			}
+			
+			@Override
+			public void setup(int cities, int population, int threads) {
+				super.setup(cities, population, threads);
+				salesman.select();
+			}
+		});
+		
+		list.add(new SalesmanBenchmark("Salesman.mutate") {
+			@Override
+			public double run() {
+				salesman.mutate();
+				
+				return salesman.getPopulation().getFitness(0);
+			}
+		});
+		
+		list.add(new SalesmanBenchmark("Salesman.runGeneration") {
+			@Override
+			public double run() {
+				salesman.runGeneration();
+				
+				return salesman.getPopulation().getFitness(0);
+			}
+		});
+		
+		list.add(new Benchmark("LinearOptimizer.fitness") {
+			LinearOptimizer optimizer;
+			
+			Random rand = new Random(SEED);
+			
+			@Override
+			public void setup(int cities, int population, int threads) {
+				optimizer = new LinearOptimizer(10, X_LOW, X_HIGH);
+			}
+			
+			@Override
+			public double run() {
+				return optimizer.fitness(rand.nextDouble() * APBioSimulation.WIDTH, rand.nextDouble() * APBioSimulation.HEIGHT);
+			}
+		});
+		
+		list.add(new Benchmark("PointOptimizer.fitness") {
+			PointOptimizer optimizer;
+			
+			Random rand = new Random(SEED);
+			
+			@Override
+			public void setup(int cities, int population, int threads) {
+				optimizer = new PointOptimizer(10, TARGET_XS, TARGET_YS);
+			}
+			
+			@Override
+			public double run() {
+				return optimizer.fitness(rand.nextDouble() * APBioSimulation.WIDTH, rand.nextDouble() * APBioSimulation.HEIGHT);
+			}
+		});
+		
+		// a population one individual at a time, against all of it at once, which is the Vector API
+		// when src-vector is compiled in and the JVM runs with --add-modules jdk.incubator.vector
+		list.add(new PositionsBenchmark("LinearOptimizer.fitnessScalar") {
+			@Override
+			public double run() {
+				for(int i = 0; i < xs.length; i++) {
+					out[i] = LinearOptimizer.fitness(xs[i], ys[i], X_LOW, X_HIGH, APBioSimulation.HEIGHT);
+				}
+				
+				return out[0];
+			}
+		});
+		
+		list.add(new PositionsBenchmark("LinearOptimizer.fitnessBatch") {
+			@Override
+			public double run() {
+				LinearOptimizer.fitness(xs, ys, 0, xs.length, X_LOW, X_HIGH, APBioSimulation.HEIGHT, out);
+				
+				return out[0];
+			}
+		});
+		
+		list.add(new PositionsBenchmark("PointOptimizer.fitnessScalar") {
+			@Override
+			public double run() {
+				for(int i = 0; i < xs.length; i++) {
+					out[i] = PointOptimizer.fitness(xs[i], ys[i], TARGET_XS, TARGET_YS, 1000);
+				}
+				
+				return out[0];
+			}
+		});
+		
+		list.add(new PositionsBenchmark("PointOptimizer.fitnessBatch") {
+			@Override
+			public double run() {
+				PointOptimizer.fitness(xs, ys, 0, xs.length, TARGET_XS, TARGET_YS, 1000, out);
+				
+				return out[0];
+			}
+		});
+		
+		list.add(new Benchmark("SalesmanSolution.random", Benchmark.CITIES) {
+			int cities;
+			
+			@Override
+			public void setup(int cities, int population, int threads) {
+				this.cities = cities;
+			}
+			
+			@Override
+			public double run() {
+				return new SalesmanSolution(cities).path[0];
+			}
+		});
+		
+		return list;
+	}
+}
@@ -0,0 +1,230 @@
+package checkpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import genetics.GeneticsBase;
+
+/**
+ * Saves and restores the whole state of a simulation
+ * The state is copied into memory on the simulation's thread between generations, so it's
+ * consistent, and written to disk on a background thread so the simulation doesn't wait on the
+ * disk. Files are written to a temporary file and moved over the old one, so a crash mid write
+ * leaves the last checkpoint intact. Loading maps the file and reads straight from the mapping.
+ * 
+ * File format, little endian
+ * "GACP", int version, string class name, state, long CRC32 of everything before it
+ * 
+ * @author Alex
+ */
+public class Checkpointer {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Starting size of the in memory copy, it grows as needed
+	static final int INITIAL_CAPACITY = 1 << 16;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	static final byte[] MAGIC = "GACP".getBytes(StandardCharsets.US_ASCII);
+	
+	// bump when the state a simulation writes changes
+	public static final int VERSION = 2;
+	
+	final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "checkpoint-writer");
+		t.setDaemon(true);
+		return t;
+	});
+	
+	final AtomicBoolean writing = new AtomicBoolean();
+	
+	/**
+	 * Copies the state of a simulation and writes it in the background
+	 * Call from the thread running the simulation, between generations. If the last checkpoint is
+	 * still being written this one is skipped rather than queued.
+	 * 
+	 * @param sim
+	 * @param file
+	 * @return completes when the file is written, null if skipped
+	 */
+	public CompletableFuture<Void> save(GeneticsBase sim, Path file) {
+		if(!writing.compareAndSet(false, true)) return null;
+		
+		ByteBuffer state;
+		
+		try {
+			state = snapshot(sim);
+		} catch(RuntimeException e) {
+			writing.set(false);
+			throw e;
+		}
+		
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		
+		writer.execute(() -> {
+			try {
+				write(state, file);
+				done.complete(null);
+			} catch(Throwable e) {
+				done.completeExceptionally(e);
+			} finally {
+				writing.set(false);
+			}
+		});
+		
+		return done;
+	}
+	
+	/**
+	 * Copies the state of a simulation and writes it before returning
+	 * 
+	 * @param sim
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void saveNow(GeneticsBase sim, Path file) throws IOException {
+		write(snapshot(sim), file);
+	}
+	
+	/**
+	 * @return true if a checkpoint is being written
+	 */
+	public boolean isWriting() {
+		return writing.get();
+	}
+	
+	/**
+	 * Stops the writer thread once any write in progress is done
+	 */
+	public void shutdown() {
+		writer.shutdown();
+	}
+	
+	/**
+	 * Copies the header and state of a simulation into memory
+	 * 
+	 * @param sim
+	 * @return header and state, ready to read
+	 */
+	static ByteBuffer snapshot(GeneticsBase sim) {
+		StateWriter out = new StateWriter(INITIAL_CAPACITY);
+		
+		out.ensure(MAGIC.length);
+		out.buf.put(MAGIC);
+		out.putInt(VERSION);
+		out.putString(sim.getClass().getName());
+		
+		sim.writeState(out);
+		
+		return out.finish();
+	}
+	
+	/**
+	 * Writes state and its checksum to a temporary file, then moves it into place
+	 * 
+	 * @param state
+	 * @param file
+	 * @throws IOException
+	 */
+	static void write(ByteBuffer state, Path file) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(state.duplicate());
+		
+		ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		trailer.putLong(crc.getValue());
+		trailer.flip();
+		
+		Path abs = file.toAbsolutePath(),
+			 tmp = abs.resolveSibling(abs.getFileName() + ".tmp");
+		
+		try(FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer[] parts = {state.duplicate(), trailer};
+			
+			while(parts[1].hasRemaining()) ch.write(parts);
+			
+			ch.force(true);
+		}
+		
+		try {
+			Files.move(tmp, abs, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException e) {
+			// some file systems can't move atomically
+			Files.move(tmp, abs, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Restores a simulation from a checkpoint
+	 * Call from the thread running the simulation, or while it isn't running.
+	 * 
+	 * @param sim simulation of the same class the checkpoint was taken from
+	 * @param file
+	 * @throws IOException if the file is damaged, from a different version, or from another class
+	 */
+	public static void load(GeneticsBase sim, Path file) throws IOException {
+		try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = ch.size();
+			
+			if(size < MAGIC.length + 4 + 4 + 8) throw new IOException(file + " is too short to be a checkpoint");
+			if(size > Integer.MAX_VALUE) throw new IOException(file + " is too big");
+			
+			MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			
+			// header
+			byte[] magic = new byte[MAGIC.length];
+			map.get(magic);
+			
+			for(int i = 0; i < MAGIC.length; i++) {
+				if(magic[i] != MAGIC[i]) throw new IOException(file + " isn't a checkpoint");
+			}
+			
+			int version = map.getInt();
+			if(version != VERSION) throw new IOException(file + " is version " + version + ", expected " + VERSION);
+			
+			// checksum covers everything up to the trailer
+			long stored = map.getLong((int) size - 8);
+			
+			ByteBuffer covered = map.duplicate();
+			covered.position(0);
+			covered.limit((int) size - 8);
+			
+			CRC32 crc = new CRC32();
+			crc.update(covered);
+			
+			if(crc.getValue() != stored) throw new IOException(file + " is damaged, checksum doesn't match");
+			
+			// state
+			ByteBuffer body = map.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			body.position(map.position());
+			body.limit((int) size - 8);
+			
+			StateReader in = new StateReader(body, version);
+			
+			String cls = in.getString();
+			if(!sim.getClass().getName().equals(cls)) throw new IOException(file + " is a " + cls + ", not a " + sim.getClass().getName());
+			
+			sim.readState(in);
+		}
+	}
+}
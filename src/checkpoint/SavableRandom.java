@@ -0,0 +1,99 @@
+package checkpoint;
+
+import java.util.Random;
+
+/**
+ * java.util.Random whose state can be saved and restored
+ * Same generator and same numbers for the same seed, but the seed and the spare gaussian are kept
+ * here instead of in Random's private fields, so a checkpoint can hold them as plain numbers.
+ * Not thread safe, each one belongs to one thread like the chunk randoms.
+ * 
+ * @author Alex
+ */
+public class SavableRandom extends Random {
+	
+	static final long MULTIPLIER = 0x5DEECE66DL,
+					  ADDEND = 0xBL,
+					  MASK = (1L << 48) - 1;
+	
+	// no initializers, Random's constructor sets them through setSeed before they would run
+	long seed;
+	
+	boolean haveNextGaussian;
+	
+	double nextGaussian;
+	
+	/**
+	 * constructor, seeded like new Random()
+	 */
+	public SavableRandom() {
+		super();
+	}
+	
+	/**
+	 * constructor
+	 * 
+	 * @param seed gives the same numbers as new Random(seed)
+	 */
+	public SavableRandom(long seed) {
+		super(seed);
+	}
+	
+	/**
+	 * Restores a generator from its saved state
+	 * 
+	 * @param state seed after scrambling, as returned by getState()
+	 * @param haveNextGaussian
+	 * @param nextGaussian
+	 */
+	SavableRandom(long state, boolean haveNextGaussian, double nextGaussian) {
+		super(0);
+		this.seed = state;
+		this.haveNextGaussian = haveNextGaussian;
+		this.nextGaussian = nextGaussian;
+	}
+	
+	@Override
+	public void setSeed(long seed) {
+		this.seed = (seed ^ MULTIPLIER) & MASK;
+		haveNextGaussian = false;
+	}
+	
+	@Override
+	protected int next(int bits) {
+		seed = ((seed * MULTIPLIER) + ADDEND) & MASK;
+		return (int) (seed >>> (48 - bits));
+	}
+	
+	/**
+	 * Polar method, exactly as in Random
+	 */
+	@Override
+	public double nextGaussian() {
+		if(haveNextGaussian) {
+			haveNextGaussian = false;
+			return nextGaussian;
+		}
+		
+		double v1, v2, s;
+		do {
+			v1 = (2 * nextDouble()) - 1;
+			v2 = (2 * nextDouble()) - 1;
+			s = (v1 * v1) + (v2 * v2);
+		} while(s >= 1 || s == 0);
+		
+		double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+		
+		nextGaussian = v2 * multiplier;
+		haveNextGaussian = true;
+		
+		return v1 * multiplier;
+	}
+	
+	/**
+	 * @return the 48 bit seed, after scrambling
+	 */
+	long getState() {
+		return seed;
+	}
+}
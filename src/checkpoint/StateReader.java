@@ -0,0 +1,133 @@
+package checkpoint;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads state written by StateWriter, usually straight from a memory mapped checkpoint
+ * 
+ * @author Alex
+ */
+public class StateReader {
+	
+	final ByteBuffer buf;
+	
+	final int version;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param buf state, positioned at its start
+	 * @param version format version the state was written with
+	 */
+	public StateReader(ByteBuffer buf, int version) {
+		this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+		this.version = version;
+	}
+	
+	/**
+	 * @return format version the state was written with, for reading older checkpoints
+	 */
+	public int version() {
+		return version;
+	}
+	
+	public int getInt() throws IOException {
+		need(4);
+		return buf.getInt();
+	}
+	
+	public long getLong() throws IOException {
+		need(8);
+		return buf.getLong();
+	}
+	
+	public double getDouble() throws IOException {
+		need(8);
+		return buf.getDouble();
+	}
+	
+	public boolean getBoolean() throws IOException {
+		need(1);
+		return buf.get() != 0;
+	}
+	
+	public String getString() throws IOException {
+		int n = length(1);
+		if(n < 0) return null;
+		
+		byte[] bytes = new byte[n];
+		buf.get(bytes);
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	public int[] getInts() throws IOException {
+		int n = length(4);
+		if(n < 0) return null;
+		
+		int[] a = new int[n];
+		buf.asIntBuffer().get(a);
+		buf.position(buf.position() + (4 * n));
+		
+		return a;
+	}
+	
+	public double[] getDoubles() throws IOException {
+		int n = length(8);
+		if(n < 0) return null;
+		
+		double[] a = new double[n];
+		buf.asDoubleBuffer().get(a);
+		buf.position(buf.position() + (8 * n));
+		
+		return a;
+	}
+	
+	public boolean[] getBooleans() throws IOException {
+		int n = length(1);
+		if(n < 0) return null;
+		
+		boolean[] a = new boolean[n];
+		for(int i = 0; i < n; i++) a[i] = buf.get() != 0;
+		
+		return a;
+	}
+	
+	/**
+	 * @return the random exactly as written, never null
+	 * @throws IOException if the state couldn't have come from a SavableRandom
+	 */
+	public SavableRandom getRandom() throws IOException {
+		long state = getLong();
+		boolean have = getBoolean();
+		double gaussian = getDouble();
+		
+		if((state & ~SavableRandom.MASK) != 0 || (have && !Double.isFinite(gaussian))) throw new IOException("bad random in checkpoint");
+		
+		return new SavableRandom(state, have, gaussian);
+	}
+	
+	/**
+	 * Reads an array length and checks the array is all there
+	 * 
+	 * @param elementSize
+	 * @return length, -1 for null
+	 * @throws IOException
+	 */
+	int length(int elementSize) throws IOException {
+		int n = getInt();
+		
+		if(n < -1) throw new IOException("bad length " + n);
+		if(n > 0) need((long) n * elementSize);
+		
+		return n;
+	}
+	
+	void need(long n) throws IOException {
+		if(buf.remaining() < n) throw new IOException("checkpoint is truncated", new BufferUnderflowException());
+	}
+}
@@ -0,0 +1,144 @@
+package checkpoint;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the binary state of a simulation in memory
+ * Arrays are copied in bulk, so taking a copy of a large population costs about as much as
+ * cloning its arrays. Everything is little endian, arrays are length prefixed and a length of -1
+ * means null.
+ * 
+ * @author Alex
+ */
+public class StateWriter {
+	
+	ByteBuffer buf;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param capacity starting size, grows as needed
+	 */
+	public StateWriter(int capacity) {
+		buf = ByteBuffer.allocate(Math.max(64, capacity)).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	/**
+	 * Makes sure n more bytes fit
+	 * 
+	 * @param n
+	 */
+	void ensure(long n) {
+		if(buf.remaining() >= n) return;
+		
+		long needed = buf.position() + n;
+		if(needed > Integer.MAX_VALUE - 8) throw new IllegalStateException("state over 2 GB");
+		
+		ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, buf.capacity() * 2L))).order(ByteOrder.LITTLE_ENDIAN);
+		buf.flip();
+		bigger.put(buf);
+		buf = bigger;
+	}
+	
+	public void putInt(int v) {
+		ensure(4);
+		buf.putInt(v);
+	}
+	
+	public void putLong(long v) {
+		ensure(8);
+		buf.putLong(v);
+	}
+	
+	public void putDouble(double v) {
+		ensure(8);
+		buf.putDouble(v);
+	}
+	
+	public void putBoolean(boolean v) {
+		ensure(1);
+		buf.put((byte) (v ? 1 : 0));
+	}
+	
+	public void putString(String s) {
+		if(s == null) {
+			putInt(-1);
+			return;
+		}
+		
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		
+		putInt(bytes.length);
+		ensure(bytes.length);
+		buf.put(bytes);
+	}
+	
+	public void putInts(int[] a) {
+		if(a == null) {
+			putInt(-1);
+			return;
+		}
+		
+		putInt(a.length);
+		ensure(4L * a.length);
+		
+		// bulk copy through a view, then move past it
+		buf.asIntBuffer().put(a);
+		buf.position(buf.position() + (4 * a.length));
+	}
+	
+	public void putDoubles(double[] a) {
+		if(a == null) {
+			putInt(-1);
+			return;
+		}
+		
+		putInt(a.length);
+		ensure(8L * a.length);
+		
+		buf.asDoubleBuffer().put(a);
+		buf.position(buf.position() + (8 * a.length));
+	}
+	
+	public void putBooleans(boolean[] a) {
+		if(a == null) {
+			putInt(-1);
+			return;
+		}
+		
+		putInt(a.length);
+		ensure(a.length);
+		
+		for(boolean b : a) buf.put((byte) (b ? 1 : 0));
+	}
+	
+	/**
+	 * Writes the seed and spare gaussian of a random, so the run carries on with the same numbers
+	 * 
+	 * @param r
+	 */
+	public void putRandom(SavableRandom r) {
+		putLong(r.getState());
+		putBoolean(r.haveNextGaussian);
+		putDouble(r.nextGaussian);
+	}
+	
+	/**
+	 * @return bytes written so far
+	 */
+	public int size() {
+		return buf.position();
+	}
+	
+	/**
+	 * @return everything written, ready to read
+	 */
+	public ByteBuffer finish() {
+		ByteBuffer out = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		out.flip();
+		
+		return out;
+	}
+}
@@ -0,0 +1,384 @@
+package distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import genetics.MigrationTopology;
+
+/**
+ * Connects IslandNodes in other processes
+ * Every batch of migrants a node sends is passed on to one other node, and the best tour anyone
+ * has sent is kept. Nodes have to be on the same instance, checked by its fingerprint.
+ * 
+ * @author Alex
+ */
+public class IslandCoordinator {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// How long to wait for nodes to hang up after being told to stop, in milliseconds
+	static final int STOP_TIMEOUT = 5000;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	/**
+	 * A connected node
+	 */
+	class Peer {
+		final int id;
+		
+		final Socket socket;
+		
+		final DataInputStream in;
+		
+		final DataOutputStream out;
+		
+		// only used while holding this peer's lock
+		MigrantProtocol writer;
+		
+		// most migrants the node takes in one batch
+		int population;
+		
+		Thread thread;
+		
+		/**
+		 * constructor
+		 * 
+		 * @param id
+		 * @param socket
+		 * @throws IOException
+		 */
+		Peer(int id, Socket socket) throws IOException {
+			this.id = id;
+			this.socket = socket;
+			
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+		
+		/**
+		 * Sends a batch of migrants
+		 * 
+		 * @param migrants
+		 */
+		synchronized void send(MigrantProtocol.Migrants migrants) {
+			// nodes can have different populations, the best ones come first
+			if(migrants.tours.size() > population) {
+				migrants = new MigrantProtocol.Migrants(migrants.tours.subList(0, population), Arrays.copyOf(migrants.fitness, population));
+			}
+			
+			try {
+				writer.writeMigrants(out, migrants);
+				out.flush();
+			} catch(IOException e) {
+				// the reading thread notices and drops the peer
+			}
+		}
+		
+		/**
+		 * Tells the node to stop
+		 */
+		synchronized void stop() {
+			try {
+				MigrantProtocol.writeStop(out);
+				out.flush();
+			} catch(IOException e) {
+				// already gone
+			}
+		}
+	}
+	
+	final ServerSocket server;
+	
+	final List<Peer> peers = new CopyOnWriteArrayList<>();
+	
+	final Random rand = new Random();
+	
+	final AtomicLong batches = new AtomicLong();
+	
+	MigrationTopology topology;
+	
+	volatile boolean running;
+	
+	Thread acceptThread;
+	
+	int nextId;
+	
+	// everything below is guarded by this
+	int cities = -1;
+	
+	long fingerprint;
+	
+	int[] best;
+	
+	double bestFitness = Double.MAX_VALUE;
+	
+	int bestPeer = -1;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param port port to listen on, 0 for any free port
+	 * @param topology where batches are passed on to
+	 * @throws IOException
+	 */
+	public IslandCoordinator(int port, MigrationTopology topology) throws IOException {
+		this.server = new ServerSocket(port);
+		this.topology = topology;
+	}
+	
+	/**
+	 * Starts accepting nodes
+	 */
+	public void start() {
+		running = true;
+		
+		acceptThread = new Thread(this::acceptLoop, "coordinator-accept");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+	
+	/**
+	 * Accepts nodes until stopped
+	 */
+	void acceptLoop() {
+		while(running) {
+			try {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				
+				Peer peer = new Peer(nextId++, socket);
+				
+				peer.thread = new Thread(() -> serve(peer), "coordinator-peer-" + peer.id);
+				peer.thread.setDaemon(true);
+				peer.thread.start();
+			} catch(IOException e) {
+				// closing the server socket ends the loop
+				if(running) e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Reads messages from a node until it hangs up
+	 * 
+	 * @param peer
+	 */
+	void serve(Peer peer) {
+		try {
+			if(peer.in.readByte() != MigrantProtocol.HELLO || peer.in.readInt() != MigrantProtocol.MAGIC) {
+				throw new IOException("not an island node");
+			}
+			
+			int peerCities = peer.in.readInt(),
+				islands = peer.in.readInt(),
+				population = peer.in.readInt();
+			long peerFingerprint = peer.in.readLong();
+			
+			if(!MigrantProtocol.validCities(peerCities)) throw new IOException("bad city count " + peerCities);
+			if(population <= 0) throw new IOException("bad population " + population);
+			
+			synchronized(this) {
+				if(cities < 0) {
+					cities = peerCities;
+					fingerprint = peerFingerprint;
+				} else if(cities != peerCities) {
+					throw new IOException("node has " + peerCities + " cities, expected " + cities);
+				} else if(fingerprint != peerFingerprint) {
+					// same size, different cities, their tours would mean nothing to each other
+					throw new IOException("node is on a different instance of " + cities + " cities");
+				}
+			}
+			
+			MigrantProtocol reader = new MigrantProtocol(peerCities, population);
+			peer.writer = new MigrantProtocol(peerCities, population);
+			peer.population = population;
+			
+			peers.add(peer);
+			System.out.println("node " + peer.id + " joined from " + peer.socket.getRemoteSocketAddress() + " with " + islands + " islands");
+			
+			while(true) {
+				byte type = peer.in.readByte();
+				
+				if(type != MigrantProtocol.MIGRANTS) throw new IOException("unexpected message " + type);
+				
+				MigrantProtocol.Migrants migrants = reader.readMigrants(peer.in);
+				batches.incrementAndGet();
+				
+				if(migrants.tours.isEmpty()) continue;
+				
+				offerBest(peer.id, migrants.tours.get(0), migrants.fitness[0]);
+				
+				Peer target = target(peer);
+				if(target != null) target.send(migrants);
+			}
+		} catch(EOFException | SocketException e) {
+			// hung up
+		} catch(IOException e) {
+			System.err.println("node " + peer.id + ": " + e.getMessage());
+		} finally {
+			peers.remove(peer);
+			
+			try {
+				peer.socket.close();
+			} catch(IOException e) {}
+			
+			System.out.println("node " + peer.id + " left");
+		}
+	}
+	
+	/**
+	 * @param from
+	 * @return node to pass a batch from a node on to, or null if it's the only one
+	 */
+	Peer target(Peer from) {
+		Peer[] all = peers.toArray(new Peer[0]);
+		
+		if(all.length < 2) return null;
+		
+		switch(topology) {
+			case RANDOM:
+				Peer p;
+				do {
+					p = all[rand.nextInt(all.length)];
+				} while(p == from);
+				
+				return p;
+			
+			default:
+				// next node in the order they joined
+				for(int i = 0; i < all.length; i++) {
+					if(all[i] == from) return all[(i + 1) % all.length];
+				}
+				
+				return all[0];
+		}
+	}
+	
+	/**
+	 * Keeps a tour if it's the shortest seen so far
+	 * 
+	 * @param peer
+	 * @param tour
+	 * @param fitness
+	 */
+	synchronized void offerBest(int peer, int[] tour, double fitness) {
+		if(fitness < bestFitness) {
+			best = tour;
+			bestFitness = fitness;
+			bestPeer = peer;
+			
+			System.out.println("new best " + fitness + " from node " + peer);
+		}
+	}
+	
+	/**
+	 * Tells every node to stop, waits a while for them to hang up, and closes the server
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void stop() throws InterruptedException {
+		running = false;
+		
+		try {
+			server.close();
+		} catch(IOException e) {}
+		
+		for(Peer p : peers) p.stop();
+		
+		// nodes send their final best before hanging up
+		long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+		
+		for(Peer p : peers) {
+			p.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+		}
+		
+		for(Peer p : peers) {
+			try {
+				p.socket.close();
+			} catch(IOException e) {}
+		}
+	}
+	
+	/**
+	 * @return shortest tour any node has sent, or null
+	 */
+	public synchronized int[] getBest() {
+		return best;
+	}
+	
+	/**
+	 * @return length of getBest()
+	 */
+	public synchronized double getBestFitness() {
+		return bestFitness;
+	}
+	
+	/**
+	 * @return id of the node getBest() came from, or -1
+	 */
+	public synchronized int getBestPeer() {
+		return bestPeer;
+	}
+	
+	/**
+	 * @return number of connected nodes
+	 */
+	public int getNumPeers() {
+		return peers.size();
+	}
+	
+	/**
+	 * @return batches of migrants received
+	 */
+	public long getBatches() {
+		return batches.get();
+	}
+	
+	/**
+	 * @return port being listened on
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+	
+	/**
+	 * Runs a coordinator for a while, then stops every node and prints the best tour
+	 * 
+	 * @param args [port] [seconds] [RING|RANDOM]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : MigrantProtocol.DEFAULT_PORT;
+		long seconds = args.length > 1 ? Long.parseLong(args[1]) : 60;
+		MigrationTopology topology = args.length > 2 ? MigrationTopology.valueOf(args[2].toUpperCase()) : MigrationTopology.RING;
+		
+		IslandCoordinator coordinator = new IslandCoordinator(port, topology);
+		coordinator.start();
+		
+		System.out.println("coordinator listening on " + coordinator.getPort() + " for " + seconds + "s");
+		
+		Thread.sleep(seconds * 1000);
+		coordinator.stop();
+		
+		System.out.println("best " + coordinator.getBestFitness() + " from node " + coordinator.getBestPeer() + " after " + coordinator.getBatches() + " batches");
+	}
+}
@@ -0,0 +1,224 @@
+package distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import genetics.IslandModel;
+import genetics.Salesman;
+import genetics.TspInstance;
+
+/**
+ * Runs an IslandModel of Salesmen in this process and swaps migrants with other processes through
+ * an IslandCoordinator
+ * Islands keep migrating between themselves as usual. Their emigrants are also queued and sent to
+ * the coordinator, and tours from other nodes are handed to the islands as they arrive.
+ * 
+ * @author Alex
+ */
+public class IslandNode {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Batches waiting to be sent. When the network falls behind, new batches are dropped
+	static final int OUTBOX_SIZE = 16;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	final IslandModel<Salesman, int[]> model;
+	
+	final int cities,
+			  population;
+	
+	final Socket socket;
+	
+	final DataInputStream in;
+	
+	final DataOutputStream out;
+	
+	// only used while holding out's lock
+	final MigrantProtocol writer;
+	
+	final ArrayBlockingQueue<List<int[]>> outbox = new ArrayBlockingQueue<>(OUTBOX_SIZE);
+	
+	volatile boolean done;
+	
+	/**
+	 * constructor, connects to the coordinator
+	 * 
+	 * @param host
+	 * @param port
+	 * @param model islands to run, all on the same cities
+	 * @throws IOException
+	 */
+	public IslandNode(String host, int port, IslandModel<Salesman, int[]> model) throws IOException {
+		this.model = model;
+		this.cities = model.getIsland(0).getInstance().getDimension();
+		
+		socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		population = model.getIsland(0).getPopulation().size();
+		writer = new MigrantProtocol(cities, population);
+		
+		synchronized(out) {
+			MigrantProtocol.writeHello(out, cities, model.getNumIslands(), population, model.getIsland(0).getInstance().fingerprint());
+			out.flush();
+		}
+		
+		// drop the batch rather than hold up an island when the queue is full
+		model.setMigrationListener((island, migrants) -> outbox.offer(migrants));
+	}
+	
+	/**
+	 * Runs the islands until they finish or the coordinator says to stop, then sends the best tour
+	 * and hangs up
+	 * 
+	 * @param numGenerations generations per island
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run(long numGenerations) throws IOException, InterruptedException {
+		model.start(numGenerations);
+		
+		Thread receiver = new Thread(this::receiveLoop, "node-receive"),
+			   sender = new Thread(this::sendLoop, "node-send");
+		
+		receiver.setDaemon(true);
+		sender.setDaemon(true);
+		receiver.start();
+		sender.start();
+		
+		try {
+			model.join();
+		} finally {
+			done = true;
+			sender.join();
+			
+			int[] best = model.getBest();
+			
+			try {
+				if(best != null) send(Collections.singletonList(best));
+				
+				socket.shutdownOutput();
+			} catch(IOException e) {
+				// coordinator already gone
+			}
+			
+			// the coordinator hangs up once it has read everything
+			receiver.join(IslandCoordinator.STOP_TIMEOUT);
+			socket.close();
+		}
+	}
+	
+	/**
+	 * Sends queued batches until the islands are done
+	 */
+	void sendLoop() {
+		try {
+			while(!done) {
+				List<int[]> migrants = outbox.poll(100, TimeUnit.MILLISECONDS);
+				
+				if(migrants != null) send(migrants);
+			}
+		} catch(IOException e) {
+			// lost the coordinator, keep running alone
+			System.err.println("lost coordinator: " + e.getMessage());
+		} catch(InterruptedException e) {}
+	}
+	
+	/**
+	 * Sends a batch with the length of each tour
+	 * 
+	 * @param migrants
+	 * @throws IOException
+	 */
+	void send(List<int[]> migrants) throws IOException {
+		Salesman s = model.getIsland(0);
+		double[] fitness = new double[migrants.size()];
+		
+		// reading distances is safe while the island runs
+		for(int i = 0; i < fitness.length; i++) {
+			fitness[i] = s.fitness(migrants.get(i));
+		}
+		
+		synchronized(out) {
+			writer.writeMigrants(out, new MigrantProtocol.Migrants(migrants, fitness));
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Hands tours from the coordinator to the islands until it says to stop or hangs up
+	 */
+	void receiveLoop() {
+		MigrantProtocol reader = new MigrantProtocol(cities, population);
+		
+		try {
+			while(true) {
+				byte type = in.readByte();
+				
+				if(type == MigrantProtocol.STOP) {
+					model.stop();
+				} else if(type == MigrantProtocol.MIGRANTS) {
+					MigrantProtocol.Migrants migrants = reader.readMigrants(in);
+					
+					for(int[] tour : migrants.tours) model.receive(tour);
+				} else {
+					throw new IOException("unexpected message " + type);
+				}
+			}
+		} catch(EOFException | SocketException e) {
+			// hung up
+		} catch(IOException e) {
+			System.err.println("coordinator: " + e.getMessage());
+		} catch(InterruptedException e) {
+		} catch(IllegalStateException e) {
+			// an island failed, the thread in run() reports it
+		}
+	}
+	
+	/**
+	 * Runs a node until the coordinator stops it or the generations run out
+	 * 
+	 * @param args host port instance [islands] [generations] [population]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 3) {
+			System.err.println("usage: IslandNode host port (file.tsp | random:cities:seed) [islands] [generations] [population]");
+			System.exit(1);
+		}
+		
+		String host = args[0];
+		int port = Integer.parseInt(args[1]);
+		TspInstance instance = TspInstance.fromSpec(args[2]);
+		int islands = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long generations = args.length > 4 ? Long.parseLong(args[4]) : Long.MAX_VALUE;
+		int population = args.length > 5 ? Integer.parseInt(args[5]) : 100;
+		
+		IslandModel<Salesman, int[]> model = new IslandModel<>(islands, i -> new Salesman(instance, population, 5, 0.5, 0.2));
+		
+		IslandNode node = new IslandNode(host, port, model);
+		node.run(generations);
+		
+		System.out.println("best " + model.getBestFitness() + " after " + model.getTotalGenerations() + " generations");
+	}
+}
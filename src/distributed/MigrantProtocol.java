@@ -0,0 +1,235 @@
+package distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format shared by IslandCoordinator and IslandNode
+ * Every message is a type byte followed by its body. Tours are sent as raw city numbers using as
+ * few bytes per city as the number of cities allows, so a 1000 city tour is 2 KB.
+ * 
+ * HELLO		int magic, int cities, int islands, int population, long instance fingerprint
+ * MIGRANTS	int count, then count times: double fitness, cities * width bytes
+ * STOP		nothing
+ * 
+ * A batch never holds more tours than the population of the node it goes to.
+ * 
+ * @author Alex
+ */
+public class MigrantProtocol {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Port used when none is given
+	public static final int DEFAULT_PORT = 47100;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	// "TSP1", so a node can't talk to something else by mistake
+	static final int MAGIC = 0x54535031;
+	
+	static final byte HELLO = 1,
+					  MIGRANTS = 2,
+					  STOP = 3;
+	
+	/**
+	 * A batch of tours and their lengths
+	 */
+	public static class Migrants {
+		public final List<int[]> tours;
+		
+		public final double[] fitness;
+		
+		/**
+		 * constructor
+		 * 
+		 * @param tours
+		 * @param fitness length of each tour
+		 */
+		public Migrants(List<int[]> tours, double[] fitness) {
+			this.tours = tours;
+			this.fitness = fitness;
+		}
+	}
+	
+	final int cities,
+			  width,
+			  maxMigrants;
+	
+	// scratch for one encoded tour
+	final byte[] buf;
+	
+	// scratch for checking a received tour is a permutation
+	final boolean[] seen;
+	
+	/**
+	 * constructor
+	 * Not thread safe, use one for reading and one for writing
+	 * 
+	 * @param cities number of cities in each tour
+	 * @param maxMigrants most tours a batch read with this may hold
+	 */
+	public MigrantProtocol(int cities, int maxMigrants) {
+		this.cities = cities;
+		this.width = bytesPerCity(cities);
+		this.maxMigrants = maxMigrants;
+		
+		buf = new byte[cities * width];
+		seen = new boolean[cities];
+	}
+	
+	/**
+	 * @param cities
+	 * @return bytes needed to hold any city number
+	 */
+	static int bytesPerCity(int cities) {
+		if(cities <= (1 << 8)) return 1;
+		if(cities <= (1 << 16)) return 2;
+		if(cities <= (1 << 24)) return 3;
+		return 4;
+	}
+	
+	/**
+	 * @param cities
+	 * @return true if a tour of this many cities can be held in one buffer
+	 */
+	static boolean validCities(int cities) {
+		return cities > 0 && (long) cities * bytesPerCity(cities) <= Integer.MAX_VALUE - 8;
+	}
+	
+	/**
+	 * Writes a HELLO
+	 * 
+	 * @param out
+	 * @param cities
+	 * @param islands
+	 * @param population individuals per island, the most migrants the node takes in one batch
+	 * @param fingerprint TspInstance.fingerprint() of the cities
+	 * @throws IOException
+	 */
+	static void writeHello(DataOutputStream out, int cities, int islands, int population, long fingerprint) throws IOException {
+		out.writeByte(HELLO);
+		out.writeInt(MAGIC);
+		out.writeInt(cities);
+		out.writeInt(islands);
+		out.writeInt(population);
+		out.writeLong(fingerprint);
+	}
+	
+	/**
+	 * Writes a STOP
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	static void writeStop(DataOutputStream out) throws IOException {
+		out.writeByte(STOP);
+	}
+	
+	/**
+	 * Writes a MIGRANTS message
+	 * 
+	 * @param out
+	 * @param migrants
+	 * @throws IOException
+	 */
+	void writeMigrants(DataOutputStream out, Migrants migrants) throws IOException {
+		out.writeByte(MIGRANTS);
+		out.writeInt(migrants.tours.size());
+		
+		for(int i = 0; i < migrants.tours.size(); i++) {
+			out.writeDouble(migrants.fitness[i]);
+			writeTour(out, migrants.tours.get(i));
+		}
+	}
+	
+	/**
+	 * Reads the body of a MIGRANTS message
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException if there are too many tours, or a tour isn't a permutation of the cities
+	 */
+	Migrants readMigrants(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		
+		// the count comes off the network, so it can't decide how much is allocated
+		if(count < 0 || count > maxMigrants) throw new IOException("bad migrant count " + count + ", at most " + maxMigrants);
+		
+		List<int[]> tours = new ArrayList<>(count);
+		double[] fitness = new double[count];
+		
+		for(int i = 0; i < count; i++) {
+			fitness[i] = in.readDouble();
+			tours.add(readTour(in));
+		}
+		
+		return new Migrants(tours, fitness);
+	}
+	
+	/**
+	 * Packs a tour into width bytes per city, big endian
+	 * 
+	 * @param out
+	 * @param tour
+	 * @throws IOException
+	 */
+	void writeTour(DataOutputStream out, int[] tour) throws IOException {
+		int p = 0;
+		
+		for(int i = 0; i < cities; i++) {
+			int c = tour[i];
+			
+			for(int shift = (width - 1) * 8; shift >= 0; shift -= 8) {
+				buf[p++] = (byte) (c >>> shift);
+			}
+		}
+		
+		out.write(buf, 0, p);
+	}
+	
+	/**
+	 * Unpacks a tour
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException if it isn't a permutation of the cities
+	 */
+	int[] readTour(DataInputStream in) throws IOException {
+		in.readFully(buf, 0, cities * width);
+		
+		int[] tour = new int[cities];
+		int p = 0;
+		
+		for(int i = 0; i < cities; i++) {
+			int c = 0;
+			
+			for(int j = 0; j < width; j++) {
+				c = (c << 8) | (buf[p++] & 0xFF);
+			}
+			
+			tour[i] = c;
+		}
+		
+		// a bad tour would break the population it lands in
+		for(int i = 0; i < cities; i++) seen[i] = false;
+		
+		for(int i = 0; i < cities; i++) {
+			int c = tour[i];
+			
+			if(c < 0 || c >= cities || seen[c]) throw new IOException("received tour isn't a permutation");
+			seen[c] = true;
+		}
+		
+		return tour;
+	}
+}
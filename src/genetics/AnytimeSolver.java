@@ -0,0 +1,179 @@
+package genetics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a problem until a deadline or until it's cancelled, and returns the best individual found
+ * For when an answer is needed within some time, like the best tour that can be found in 200 ms.
+ * 
+ * The deadline is checked between the phases of each generation. A generation cut short skips
+ * whatever improvement and mutation it has left but is still evaluated, so latency is bounded by
+ * about one phase whatever the size of the problem, and the problem can be solved again later
+ * from where it stopped.
+ * 
+ * @author Alex
+ * 
+ * @param <P> problem
+ * @param <M> what an individual is carried as
+ */
+public class AnytimeSolver<P extends GeneticsBase & Migratable<M>, M> {
+	
+	/**
+	 * Hears about every new best individual
+	 * Called on the solving thread, so it should return quickly
+	 */
+	public interface ProgressListener<M> {
+		/**
+		 * @param progress the new best and how long it took, with no reason to stop yet
+		 */
+		void improved(Result<M> progress);
+	}
+	
+	/**
+	 * Why a solve stopped
+	 */
+	public enum Stop {
+		DEADLINE,
+		CANCELLED
+	}
+	
+	/**
+	 * Best individual of a solve
+	 */
+	public static class Result<M> {
+		
+		final M best;
+		
+		final double fitness;
+		
+		final int generations;
+		
+		final long elapsedNanos;
+		
+		// null while still solving
+		final Stop stop;
+		
+		Result(M best, double fitness, int generations, long elapsedNanos, Stop stop) {
+			this.best = best;
+			this.fitness = fitness;
+			this.generations = generations;
+			this.elapsedNanos = elapsedNanos;
+			this.stop = stop;
+		}
+		
+		/**
+		 * @return copy of the best individual found
+		 */
+		public M getBest() {
+			return best;
+		}
+		
+		/**
+		 * @return fitness of the best individual
+		 */
+		public double getFitness() {
+			return fitness;
+		}
+		
+		/**
+		 * @return generations run, counting one cut short by the deadline
+		 */
+		public int getGenerations() {
+			return generations;
+		}
+		
+		/**
+		 * @return time since the solve started
+		 */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+		
+		/**
+		 * @return why the solve stopped, null if it hasn't
+		 */
+		public Stop getStop() {
+			return stop;
+		}
+	}
+	
+	final P problem;
+	
+	volatile ProgressListener<M> listener;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param problem problem to solve, already set up. Solving continues from its population
+	 */
+	public AnytimeSolver(P problem) {
+		this.problem = problem;
+	}
+	
+	/**
+	 * @param listener hears about every new best, or null
+	 */
+	public void setListener(ProgressListener<M> listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Solves for a length of time
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @param token token to stop early with, or null
+	 * @return the best individual found
+	 */
+	public Result<M> solve(long timeout, TimeUnit unit, CancellationToken token) {
+		return solve(Deadline.after(timeout, unit, token));
+	}
+	
+	/**
+	 * Solves until a deadline passes
+	 * Only one thread can solve a problem at a time, and nothing else should run it meanwhile
+	 * 
+	 * @param deadline
+	 * @return the best individual found
+	 */
+	public Result<M> solve(Deadline deadline) {
+		long start = System.nanoTime();
+		boolean minimize = problem.minimizesFitness();
+		int generations = 0;
+		
+		// what the problem starts with counts, so there's an answer even if the deadline has passed
+		M best = problem.emigrants(1).get(0);
+		double bestFitness = problem.getBestFitness();
+		
+		problem.setDeadline(deadline);
+		
+		try {
+			while(!deadline.passed()) {
+				problem.runGeneration();
+				generations++;
+				
+				// problems without elites can lose their best, so it's kept here
+				double f = problem.getBestFitness();
+				
+				if(minimize ? f < bestFitness : f > bestFitness) {
+					best = problem.emigrants(1).get(0);
+					bestFitness = f;
+					
+					ProgressListener<M> l = listener;
+					if(l != null) l.improved(new Result<>(best, bestFitness, generations, System.nanoTime() - start, null));
+				}
+			}
+		} finally {
+			problem.setDeadline(null);
+		}
+		
+		return new Result<>(best, bestFitness, generations, System.nanoTime() - start, deadline.isCancelled() ? Stop.CANCELLED : Stop.DEADLINE);
+	}
+	
+	/**
+	 * @return the problem being solved
+	 */
+	public P getProblem() {
+		return problem;
+	}
+}
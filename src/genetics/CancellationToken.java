@@ -0,0 +1,26 @@
+package genetics;
+
+/**
+ * Lets another thread stop a solve early
+ * Cancelling is a volatile write, seen the next time the solver checks its deadline
+ * 
+ * @author Alex
+ */
+public class CancellationToken {
+	
+	volatile boolean cancelled;
+	
+	/**
+	 * Asks whatever is using this to stop, safe from any thread
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * @return true if cancel() was called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
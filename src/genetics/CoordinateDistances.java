@@ -0,0 +1,26 @@
+package genetics;
+
+/**
+ * Computes distances from coordinates every time
+ * Used when there are too many cities for a matrix
+ * 
+ * @author Alex
+ */
+public class CoordinateDistances extends DistanceProvider {
+	
+	/**
+	 * constructor
+	 * 
+	 * @param xs x coordinate of each city
+	 * @param ys y coordinate of each city
+	 * @param rounding how distances are rounded
+	 */
+	public CoordinateDistances(double[] xs, double[] ys, Rounding rounding) {
+		super(xs, ys, xs.length, rounding);
+	}
+	
+	@Override
+	public double dist(int a, int b) {
+		return euclidean(a, b);
+	}
+}
@@ -0,0 +1,61 @@
+package genetics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When a run has to stop, by wall clock time or by being cancelled
+ * Checking is a System.nanoTime() and a volatile read, cheap enough to do between every phase.
+ * 
+ * @author Alex
+ */
+public class Deadline {
+	
+	// System.nanoTime() to stop at
+	final long end;
+	
+	// null if it can't be cancelled
+	final CancellationToken token;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param end System.nanoTime() to stop at
+	 * @param token token that can stop it early, or null
+	 */
+	public Deadline(long end, CancellationToken token) {
+		this.end = end;
+		this.token = token;
+	}
+	
+	/**
+	 * @param timeout
+	 * @param unit
+	 * @param token token that can stop it early, or null
+	 * @return a deadline timeout from now
+	 */
+	public static Deadline after(long timeout, TimeUnit unit, CancellationToken token) {
+		return new Deadline(System.nanoTime() + unit.toNanos(timeout), token);
+	}
+	
+	/**
+	 * @return true if it's time to stop
+	 */
+	public boolean passed() {
+		// subtracting so it still works when nanoTime wraps around
+		return isCancelled() || System.nanoTime() - end >= 0;
+	}
+	
+	/**
+	 * @return true if it was cancelled, whether or not the time is up
+	 */
+	public boolean isCancelled() {
+		return token != null && token.isCancelled();
+	}
+	
+	/**
+	 * @return nanoseconds left, negative once it's passed
+	 */
+	public long remainingNanos() {
+		return end - System.nanoTime();
+	}
+}
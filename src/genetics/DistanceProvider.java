@@ -0,0 +1,209 @@
+package genetics;
+
+/**
+ * Supplies distances between cities for the Salesman
+ * Coordinates are kept in flat arrays so fitness, drawing, and local search all read the same data
+ * 
+ * @author Alex
+ */
+public abstract class DistanceProvider {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Largest number of cities that gets a double precision matrix (32 MB at 2048)
+	public static final int DOUBLE_MATRIX_LIMIT = 2048;
+	
+	// Largest number of cities that gets a single precision matrix (256 MB at 8192)
+	public static final int FLOAT_MATRIX_LIMIT = 8192;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	/**
+	 * How distances are found
+	 */
+	public enum Mode {
+		AUTO,			// pick based on the number of cities
+		DOUBLE_MATRIX,	// precomputed n^2 doubles
+		FLOAT_MATRIX,	// precomputed n^2 floats, half the memory
+		COORDINATES		// computed from coordinates every time, for instances too big for a matrix
+	}
+	
+	/**
+	 * How straight line distances are rounded
+	 */
+	public enum Rounding {
+		NONE,		// exact
+		NEAREST,	// nearest integer, TSPLIB EUC_2D
+		UP			// next integer up, TSPLIB CEIL_2D
+	}
+	
+	// null if the cities have no coordinates
+	final double[] xs, ys;
+	
+	final int size;
+	
+	final Rounding rounding;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param xs x coordinate of each city, or null
+	 * @param ys y coordinate of each city, or null
+	 * @param size number of cities
+	 * @param rounding how distances from coordinates are rounded
+	 */
+	DistanceProvider(double[] xs, double[] ys, int size, Rounding rounding) {
+		this.xs = xs;
+		this.ys = ys;
+		this.size = size;
+		this.rounding = rounding;
+	}
+	
+	/**
+	 * Creates a provider for the given cities with exact distances
+	 * 
+	 * @param xs x coordinate of each city
+	 * @param ys y coordinate of each city
+	 * @param mode how distances should be found
+	 * @return
+	 */
+	public static DistanceProvider create(double[] xs, double[] ys, Mode mode) {
+		return create(xs, ys, mode, Rounding.NONE);
+	}
+	
+	/**
+	 * Creates a provider for the given cities
+	 * 
+	 * @param xs x coordinate of each city
+	 * @param ys y coordinate of each city
+	 * @param mode how distances should be found
+	 * @param rounding how distances are rounded
+	 * @return
+	 */
+	public static DistanceProvider create(double[] xs, double[] ys, Mode mode, Rounding rounding) {
+		if(mode == Mode.AUTO) {
+			if(xs.length <= DOUBLE_MATRIX_LIMIT) mode = Mode.DOUBLE_MATRIX;
+			else if(xs.length <= FLOAT_MATRIX_LIMIT) mode = Mode.FLOAT_MATRIX;
+			else mode = Mode.COORDINATES;
+		}
+		
+		switch(mode) {
+			case DOUBLE_MATRIX:
+				return new DoubleDistanceMatrix(xs, ys, rounding);
+			
+			case FLOAT_MATRIX:
+				return new FloatDistanceMatrix(xs, ys, rounding);
+			
+			default:
+				return new CoordinateDistances(xs, ys, rounding);
+		}
+	}
+	
+	/**
+	 * Returns the distance between two cities
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public abstract double dist(int a, int b);
+	
+	/**
+	 * Returns the length of a path through the cities, not returning to the start
+	 * 
+	 * @param path array holding the path
+	 * @param offset index of the first city of the path
+	 * @param length number of cities in the path
+	 * @return
+	 */
+	public double pathLength(int[] path, int offset, int length) {
+		double total = 0;
+		
+		for(int i = offset + 1; i < offset + length; i++) {
+			total += dist(path[i - 1], path[i]);
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Returns the length of a tour through the cities that returns to the start
+	 * 
+	 * @param path array holding the tour
+	 * @param offset index of the first city of the tour
+	 * @param length number of cities in the tour
+	 * @return
+	 */
+	public double tourLength(int[] path, int offset, int length) {
+		if(length < 2) return 0;
+		
+		return pathLength(path, offset, length) + dist(path[offset + length - 1], path[offset]);
+	}
+	
+	/**
+	 * Computes the straight line distance between two cities from their coordinates
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	final double euclidean(int a, int b) {
+		double dx = xs[a] - xs[b],
+			   dy = ys[a] - ys[b],
+			   d = Math.sqrt((dx * dx) + (dy * dy));
+		
+		switch(rounding) {
+			case NEAREST:
+				return (int) (d + 0.5);
+			
+			case UP:
+				return Math.ceil(d);
+			
+			default:
+				return d;
+		}
+	}
+	
+	/**
+	 * @return true if the cities have coordinates
+	 */
+	public final boolean hasCoordinates() {
+		return xs != null;
+	}
+	
+	/**
+	 * @return how distances from coordinates are rounded
+	 */
+	public final Rounding getRounding() {
+		return rounding;
+	}
+	
+	/**
+	 * @param city
+	 * @return x coordinate of the city
+	 */
+	public final double x(int city) {
+		return xs[city];
+	}
+	
+	/**
+	 * @param city
+	 * @return y coordinate of the city
+	 */
+	public final double y(int city) {
+		return ys[city];
+	}
+	
+	/**
+	 * @return number of cities
+	 */
+	public final int size() {
+		return size;
+	}
+}
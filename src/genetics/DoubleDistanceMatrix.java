@@ -0,0 +1,50 @@
+package genetics;
+
+/**
+ * Precomputed distances in a flat row-major double matrix
+ * 
+ * @author Alex
+ */
+public class DoubleDistanceMatrix extends DistanceProvider {
+	
+	final double[] matrix;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param xs x coordinate of each city
+	 * @param ys y coordinate of each city
+	 * @param rounding how distances are rounded
+	 */
+	public DoubleDistanceMatrix(double[] xs, double[] ys, Rounding rounding) {
+		super(xs, ys, xs.length, rounding);
+		
+		matrix = new double[size * size];
+		
+		// only compute half, the other half is the same
+		for(int a = 0; a < size; a++) {
+			for(int b = a + 1; b < size; b++) {
+				double d = euclidean(a, b);
+				
+				matrix[(a * size) + b] = d;
+				matrix[(b * size) + a] = d;
+			}
+		}
+	}
+	
+	@Override
+	public double dist(int a, int b) {
+		return matrix[(a * size) + b];
+	}
+	
+	@Override
+	public double pathLength(int[] path, int offset, int length) {
+		double total = 0;
+		
+		for(int i = offset + 1; i < offset + length; i++) {
+			total += matrix[(path[i - 1] * size) + path[i]];
+		}
+		
+		return total;
+	}
+}
@@ -0,0 +1,42 @@
+package genetics;
+
+/**
+ * Distances given directly as a full matrix, such as a TSPLIB EXPLICIT instance
+ * Coordinates are optional and only used for drawing
+ * 
+ * @author Alex
+ */
+public class ExplicitDistances extends DistanceProvider {
+	
+	final double[] matrix;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param matrix flat row-major n by n matrix of distances
+	 * @param size number of cities
+	 * @param xs x coordinate of each city for display, or null
+	 * @param ys y coordinate of each city for display, or null
+	 */
+	public ExplicitDistances(double[] matrix, int size, double[] xs, double[] ys) {
+		super(xs, ys, size, Rounding.NONE);
+		
+		this.matrix = matrix;
+	}
+	
+	@Override
+	public double dist(int a, int b) {
+		return matrix[(a * size) + b];
+	}
+	
+	@Override
+	public double pathLength(int[] path, int offset, int length) {
+		double total = 0;
+		
+		for(int i = offset + 1; i < offset + length; i++) {
+			total += matrix[(path[i - 1] * size) + path[i]];
+		}
+		
+		return total;
+	}
+}
@@ -0,0 +1,188 @@
+package genetics;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the lowest and highest fitness over every pixel of the field, which the heatmaps are
+ * colored by
+ * Results are cached by the kind of landscape, field size and targets, so resetting or making
+ * another simulation with the same targets doesn't look again. Scans run a column per task in
+ * parallel, and convex landscapes only search each column rather than scanning it.
+ * 
+ * @author Alex
+ */
+public class FitnessBounds {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Most target configurations remembered. The cache is emptied when it gets bigger
+	static final int MAX_ENTRIES = 256;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	/**
+	 * Fitness at a pixel
+	 */
+	public interface Landscape {
+		double fitness(int x, int y);
+	}
+	
+	static final ConcurrentHashMap<Key, double[]> CACHE = new ConcurrentHashMap<>();
+	
+	/**
+	 * Finds bounds by looking at every pixel
+	 * 
+	 * @param kind name of the landscape, so different ones with the same targets don't collide
+	 * @param width
+	 * @param height
+	 * @param landscape
+	 * @param targets everything the landscape depends on besides its kind and size
+	 * @return {min, max}
+	 */
+	public static double[] scan(String kind, int width, int height, Landscape landscape, int[]... targets) {
+		return cached(new Key(kind, width, height, targets), () -> bounds(width, height, x -> {
+			double min = landscape.fitness(x, 0),
+				   max = min;
+			
+			for(int y = 1; y < height; y++) {
+				double f = landscape.fitness(x, y);
+				
+				if(f < min) min = f;
+				if(f > max) max = f;
+			}
+			
+			return new double[] {min, max};
+		}));
+	}
+	
+	/**
+	 * Finds bounds of a convex landscape, such as a sum of distances to lines
+	 * The highest fitness of a convex function on a rectangle is at a corner, and each column is
+	 * convex so its lowest fitness can be found with a binary search on the slope
+	 * 
+	 * @param kind name of the landscape, so different ones with the same targets don't collide
+	 * @param width
+	 * @param height
+	 * @param landscape
+	 * @param targets everything the landscape depends on besides its kind and size
+	 * @return {min, max}
+	 */
+	public static double[] convex(String kind, int width, int height, Landscape landscape, int[]... targets) {
+		return cached(new Key(kind, width, height, targets), () -> {
+			double[] b = bounds(width, height, x -> {
+				// first y where fitness stops going down
+				int lo = 0,
+					hi = height - 1;
+				
+				while(lo < hi) {
+					int mid = (lo + hi) >>> 1;
+					
+					if(landscape.fitness(x, mid + 1) < landscape.fitness(x, mid)) lo = mid + 1;
+					else hi = mid;
+				}
+				
+				double min = landscape.fitness(x, lo);
+				
+				return new double[] {min, min};
+			});
+			
+			b[1] = Math.max(Math.max(landscape.fitness(0, 0), landscape.fitness(width - 1, 0)),
+							Math.max(landscape.fitness(0, height - 1), landscape.fitness(width - 1, height - 1)));
+			
+			return b;
+		});
+	}
+	
+	/**
+	 * Combines the bounds of every column
+	 * 
+	 * @param width
+	 * @param height
+	 * @param column gives {min, max} of a column, called from several threads
+	 * @return {min, max}
+	 */
+	static double[] bounds(int width, int height, IntFunction<double[]> column) {
+		double[][] columns = new double[width][];
+		
+		IntStream.range(0, width).parallel().forEach(x -> columns[x] = column.apply(x));
+		
+		double min = columns[0][0],
+			   max = columns[0][1];
+		
+		for(double[] c : columns) {
+			if(c[0] < min) min = c[0];
+			if(c[1] > max) max = c[1];
+		}
+		
+		return new double[] {min, max};
+	}
+	
+	static double[] cached(Key key, Supplier<double[]> compute) {
+		double[] b = CACHE.get(key);
+		
+		if(b == null) {
+			b = compute.get();
+			
+			if(CACHE.size() >= MAX_ENTRIES) CACHE.clear();
+			CACHE.put(key, b);
+		}
+		
+		return b.clone();
+	}
+	
+	/**
+	 * Empties the cache
+	 */
+	public static void clear() {
+		CACHE.clear();
+	}
+	
+	/**
+	 * What bounds depend on
+	 */
+	static class Key {
+		
+		final String kind;
+		
+		final int width, height;
+		
+		final int[][] targets;
+		
+		final int hash;
+		
+		Key(String kind, int width, int height, int[][] targets) {
+			this.kind = kind;
+			this.width = width;
+			this.height = height;
+			
+			// copied so changing the arrays later can't change the key
+			this.targets = new int[targets.length][];
+			for(int i = 0; i < targets.length; i++) this.targets[i] = targets[i].clone();
+			
+			this.hash = (((kind.hashCode() * 31) + width) * 31 + height) * 31 + Arrays.deepHashCode(this.targets);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) return false;
+			
+			Key k = (Key) o;
+			return hash == k.hash && width == k.width && height == k.height && kind.equals(k.kind) && Arrays.deepEquals(targets, k.targets);
+		}
+	}
+}
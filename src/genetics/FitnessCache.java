@@ -0,0 +1,101 @@
+package genetics;
+
+import java.util.Arrays;
+
+/**
+ * Remembers fitness by a 64 bit hash of the individual, so copies and individuals that show up
+ * again don't have to be evaluated
+ * An open addressing table that looks a few slots past the hash's home, and replaces the home slot
+ * when they're all taken. Each slot keeps the hash XORed with the fitness next to the fitness, so
+ * chunks can share it without locking: a slot two threads write at once just reads as a miss.
+ * 
+ * @author Alex
+ */
+public class FitnessCache {
+	
+	// slots looked at for each hash
+	static final int PROBES = 4;
+	
+	// hash ^ fitness bits, and fitness bits, of each slot
+	final long[] checks,
+				 values;
+	
+	final int mask;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param bits log2 of the number of slots
+	 */
+	public FitnessCache(int bits) {
+		checks = new long[1 << bits];
+		values = new long[1 << bits];
+		mask = checks.length - 1;
+	}
+	
+	/**
+	 * @param hash
+	 * @return index of the first slot to look at
+	 */
+	int home(long hash) {
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+	
+	/**
+	 * @param hash
+	 * @return fitness of the individual with this hash, NaN if it isn't known
+	 */
+	public double get(long hash) {
+		int s = home(hash);
+		
+		for(int p = 0; p < PROBES; p++) {
+			// read once, the other thread may write in between
+			long v = values[s];
+			if((checks[s] ^ v) == hash && v != 0) return Double.longBitsToDouble(v);
+			
+			s = (s + 1) & mask;
+		}
+		
+		return Double.NaN;
+	}
+	
+	/**
+	 * Remembers the fitness of an individual
+	 * 
+	 * @param hash
+	 * @param fitness
+	 */
+	public void put(long hash, double fitness) {
+		long v = Double.doubleToRawLongBits(fitness);
+		int home = home(hash),
+			s = home;
+		
+		// an empty slot or the one already holding this hash, otherwise the home slot
+		for(int p = 0; p < PROBES; p++) {
+			long c = checks[s] ^ values[s];
+			
+			if(values[s] == 0 || c == hash) break;
+			
+			s = (s + 1) & mask;
+			if(p == PROBES - 1) s = home;
+		}
+		
+		values[s] = v;
+		checks[s] = hash ^ v;
+	}
+	
+	/**
+	 * Forgets everything, for when fitness means something else
+	 */
+	public void clear() {
+		Arrays.fill(checks, 0);
+		Arrays.fill(values, 0);
+	}
+	
+	/**
+	 * @return number of slots
+	 */
+	public int capacity() {
+		return checks.length;
+	}
+}
@@ -0,0 +1,51 @@
+package genetics;
+
+/**
+ * Precomputed distances in a flat row-major float matrix
+ * Half the memory of DoubleDistanceMatrix for when that doesn't fit
+ * 
+ * @author Alex
+ */
+public class FloatDistanceMatrix extends DistanceProvider {
+	
+	final float[] matrix;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param xs x coordinate of each city
+	 * @param ys y coordinate of each city
+	 * @param rounding how distances are rounded
+	 */
+	public FloatDistanceMatrix(double[] xs, double[] ys, Rounding rounding) {
+		super(xs, ys, xs.length, rounding);
+		
+		matrix = new float[size * size];
+		
+		// only compute half, the other half is the same
+		for(int a = 0; a < size; a++) {
+			for(int b = a + 1; b < size; b++) {
+				float d = (float) euclidean(a, b);
+				
+				matrix[(a * size) + b] = d;
+				matrix[(b * size) + a] = d;
+			}
+		}
+	}
+	
+	@Override
+	public double dist(int a, int b) {
+		return matrix[(a * size) + b];
+	}
+	
+	@Override
+	public double pathLength(int[] path, int offset, int length) {
+		double total = 0;
+		
+		for(int i = offset + 1; i < offset + length; i++) {
+			total += matrix[(path[i - 1] * size) + path[i]];
+		}
+		
+		return total;
+	}
+}
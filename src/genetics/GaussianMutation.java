@@ -0,0 +1,55 @@
+package genetics;
+
+import java.util.Random;
+
+/**
+ * Adds a value from a bell curve to every gene of some individuals, then keeps them in bounds
+ * The standard deviation can shrink as generations go on.
+ * 
+ * @author Alex
+ */
+public class GaussianMutation implements GeneticEngine.Mutation<VectorPopulation> {
+	
+	final double probability,
+				 deviation,
+				 diminishingFactor;
+	
+	// standard deviation for this generation
+	double current;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param probability probability an individual is mutated
+	 * @param deviation standard deviation of the change to each gene
+	 * @param diminishingFactor the deviation is divided by the number of generations divided by
+	 * this, once there are more generations than this. 0 keeps it the same
+	 */
+	public GaussianMutation(double probability, double deviation, double diminishingFactor) {
+		this.probability = probability;
+		this.deviation = deviation;
+		this.diminishingFactor = diminishingFactor;
+		this.current = deviation;
+	}
+	
+	@Override
+	public void prepare(GeneticEngine<VectorPopulation> engine) {
+		current = diminishingFactor > 0 ? deviation / Math.max(1, engine.numGenerations / diminishingFactor) : deviation;
+	}
+	
+	@Override
+	public void mutate(GeneticEngine<VectorPopulation> engine, int start, int end, int chunk, Random r) {
+		VectorPopulation pop = engine.population;
+		
+		for(int i = start; i < end; i++) {
+			if(r.nextFloat() < probability) {
+				for(int d = 0; d < pop.dimensions; d++) {
+					pop.genes[d][i] += r.nextGaussian() * current;
+				}
+				
+				pop.clamp(i);
+				pop.evaluated[i] = false;
+			}
+		}
+	}
+}
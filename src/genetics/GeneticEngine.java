@@ -0,0 +1,472 @@
+package genetics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import checkpoint.SavableRandom;
+import metrics.Phase;
+
+/**
+ * Runs generations for any problem whose individuals fit in a Population
+ * The engine owns the current generation and the buffer the next is built in, the parents picked
+ * for each child, the random numbers and the threads. A problem plugs in an operator for each
+ * stage and keeps only what's its own, like drawing and checkpoints.
+ * 
+ * A generation is select, cross, improve (if there's an improvement stage), mutate, then evaluate,
+ * so fitness is always current between generations. With more than one thread every stage is
+ * split into chunks on a ParallelRunner, each chunk with its own Random, so operators only ever
+ * see a range of the population and the chunk it belongs to.
+ * 
+ * With a deadline set, a generation stops before crossing if it has passed, and once crossed skips
+ * whatever improvement and mutation is left, but is always evaluated.
+ * 
+ * @author Alex
+ * 
+ * @param <P> encoding of the individuals
+ */
+public abstract class GeneticEngine<P extends Population> extends GeneticsBase {
+	
+	/**
+	 * Picks the parents of the children after the elites
+	 */
+	public interface Selection {
+		/**
+		 * @param size number of individuals
+		 * @param elites number of elites
+		 * @return how many of the best individuals need to be at the front of order before
+		 * selecting, 0 if it doesn't use order
+		 */
+		default int ranked(int size, int elites) {
+			return 0;
+		}
+		
+		/**
+		 * Picks one parent. Anything ranked is already at the front of the engine's order
+		 * 
+		 * @param engine
+		 * @param r random of the chunk
+		 * @return index of the parent
+		 */
+		int pick(GeneticEngine<?> engine, Random r);
+		
+		/**
+		 * Fills a range of the engine's selected
+		 * 
+		 * @param engine
+		 * @param start first index, inclusive
+		 * @param end last index, exclusive
+		 * @param r random of the chunk
+		 */
+		default void select(GeneticEngine<?> engine, int start, int end, Random r) {
+			int[] selected = engine.selected;
+			
+			for(int i = start; i < end; i++) {
+				selected[i] = pick(engine, r);
+			}
+		}
+	}
+	
+	/**
+	 * Makes the next generation from the selected parents
+	 */
+	public interface Crossover<T extends Population> {
+		/**
+		 * @param size number of individuals
+		 * @return number of parents selection has to pick
+		 */
+		default int parents(int size) {
+			return size;
+		}
+		
+		/**
+		 * Called on the engine's thread before crossing, for setup that every chunk shares
+		 * 
+		 * @param engine
+		 */
+		default void prepare(GeneticEngine<T> engine) {}
+		
+		/**
+		 * Writes a range of the engine's next population, only reading the current one
+		 * 
+		 * @param engine
+		 * @param start first child, inclusive
+		 * @param end last child, exclusive
+		 * @param chunk index of the chunk, for per chunk scratch
+		 * @param r random of the chunk
+		 */
+		void cross(GeneticEngine<T> engine, int start, int end, int chunk, Random r);
+	}
+	
+	/**
+	 * Changes individuals of the current population in place, used for mutation and local search
+	 */
+	public interface Mutation<T extends Population> {
+		/**
+		 * Called on the engine's thread before mutating, for setup that every chunk shares
+		 * 
+		 * @param engine
+		 */
+		default void prepare(GeneticEngine<T> engine) {}
+		
+		/**
+		 * Changes a range of the engine's population. Anything changed without updating its
+		 * fitness has to be marked as not evaluated
+		 * 
+		 * @param engine
+		 * @param start first index, inclusive
+		 * @param end last index, exclusive
+		 * @param chunk index of the chunk, for per chunk scratch
+		 * @param r random of the chunk
+		 */
+		void mutate(GeneticEngine<T> engine, int start, int end, int chunk, Random r);
+	}
+	
+	/**
+	 * Evaluates individuals
+	 */
+	public interface Fitness<T extends Population> {
+		/**
+		 * Sets the fitness of a range of individuals, and marks them evaluated
+		 * 
+		 * @param population
+		 * @param start first index, inclusive
+		 * @param end last index, exclusive
+		 */
+		void evaluate(T population, int start, int end);
+	}
+	
+	// current generation and the buffer the next one is built in, swapped every generation
+	P population,
+	  nextPopulation;
+	
+	// indices into population of the parents of each child, elites first
+	int[] selected;
+	
+	// best individuals first, the ones the selection ranks, as left by the last rank()
+	int[] order;
+	
+	// scratch for finding the best individuals, so it doesn't disturb order
+	int[] scratch;
+	
+	int elites,
+		numGenerations;
+	
+	// every this many generations every individual is evaluated from scratch, 0 for never
+	int fullEvaluationInterval;
+	
+	// null when the crossover finds its own mates
+	Selection selection;
+	
+	Crossover<P> crossover;
+	
+	// improvement is null when there's no local search
+	Mutation<P> improvement,
+				mutation;
+	
+	Fitness<P> evaluator;
+	
+	// null when running on one thread
+	ParallelRunner runner;
+	
+	// a SavableRandom so checkpoints can hold its state
+	SavableRandom rand = new SavableRandom();
+	
+	/**
+	 * Replaces the population and the buffers that depend on its size
+	 * 
+	 * @param population
+	 * @param nextPopulation empty population of the same encoding and size
+	 */
+	protected void setPopulation(P population, P nextPopulation) {
+		this.population = population;
+		this.nextPopulation = nextPopulation;
+		
+		selected = new int[population.size];
+		order = new int[population.size];
+		scratch = new int[population.size];
+	}
+	
+	@Override
+	public void initPopulation() {
+		numGenerations = 0;
+		
+		for(int i = 0; i < population.size; i++) {
+			population.randomize(i, rand);
+		}
+		
+		generateFitness();
+	}
+	
+	@Override
+	public void runGeneration() {
+		long t = beginGeneration();
+		
+		select();
+		t = endPhase(Phase.SELECT, t);
+		
+		// nothing has changed yet, so stopping here leaves the population as it was
+		if(deadlinePassed()) {
+			endGeneration();
+			return;
+		}
+		
+		cross();
+		t = endPhase(Phase.CROSS, t);
+		
+		// past the deadline the children are only evaluated, so the population stays consistent
+		boolean full = fullEvaluationInterval > 0 && numGenerations % fullEvaluationInterval == 0;
+		
+		if(runner != null && metrics == null) {
+			// the rest only touches each chunk's own individuals, so it's done in one pass
+			if(improvement != null) improvement.prepare(this);
+			mutation.prepare(this);
+			
+			runner.forEachChunk(population.size, (c, s, e) -> {
+				// each chunk checks for itself, so a slow local search stops as soon as it can
+				if(!deadlinePassed()) {
+					if(improvement != null) improvement.mutate(this, s, e, c, runner.random(c));
+					
+					mutation.mutate(this, s, e, c, runner.random(c));
+				}
+				
+				if(full) Arrays.fill(population.evaluated, s, e, false);
+				
+				evaluator.evaluate(population, s, e);
+			});
+		} else {
+			// separate passes so each phase can be timed
+			if(improvement != null && !deadlinePassed()) {
+				improve();
+				t = endPhase(Phase.LOCAL_SEARCH, t);
+			}
+			
+			if(!deadlinePassed()) {
+				mutate();
+				t = endPhase(Phase.MUTATE, t);
+			}
+			
+			if(full) population.invalidate();
+			
+			generateFitnessParallel();
+			endPhase(Phase.FITNESS, t);
+		}
+		
+		numGenerations++;
+		generationDone();
+		endGeneration();
+	}
+	
+	/**
+	 * Called at the end of every generation, after it's counted
+	 */
+	protected void generationDone() {}
+	
+	/**
+	 * Runs body over [0, n), split into chunks when there's more than one thread
+	 * 
+	 * @param n
+	 * @param body
+	 */
+	void forEachChunk(int n, ParallelRunner.ChunkBody body) {
+		if(runner == null) body.run(0, 0, n);
+		else runner.forEachChunk(n, body);
+	}
+	
+	@Override
+	public void select() {
+		if(selection == null) return;
+		
+		int parents = crossover.parents(population.size);
+		
+		rank();
+		
+		// each chunk only writes to its own range
+		forEachChunk(parents, (c, s, e) -> selection.select(this, Math.max(s, elites), e, random(c)));
+	}
+	
+	/**
+	 * Puts the elites, and the individuals the selection ranks, at the front of selected and order
+	 * Called by select(), and by anything picking parents one at a time between generations
+	 */
+	void rank() {
+		int pool = Math.max(elites, selection.ranked(population.size, elites));
+		if(pool > 0) selectElites(pool);
+	}
+	
+	/**
+	 * Puts the elites, best first, at the start of selected, and the best pool individuals at the
+	 * start of order
+	 * Only the best are ordered, the rest of the population is left as is
+	 * 
+	 * @param pool
+	 */
+	void selectElites(int pool) {
+		int n = population.size;
+		for(int i = 0; i < n; i++) order[i] = i;
+		
+		population.selectBest(order, 0, n, pool);
+		population.selectBest(order, 0, pool, elites);
+		population.sortByFitness(order, 0, elites);
+		
+		System.arraycopy(order, 0, selected, 0, elites);
+	}
+	
+	@Override
+	public void cross() {
+		crossover.prepare(this);
+		
+		// crossing reads parents from anywhere, so every chunk has to be selected first
+		forEachChunk(population.size, (c, s, e) -> crossover.cross(this, s, e, c, random(c)));
+		
+		swapPopulations();
+	}
+	
+	/**
+	 * The new generation becomes current and the old one is reused for the next
+	 */
+	void swapPopulations() {
+		P t = population;
+		population = nextPopulation;
+		nextPopulation = t;
+	}
+	
+	/**
+	 * Runs the improvement stage, if there is one
+	 */
+	public void improve() {
+		if(improvement == null) return;
+		
+		improvement.prepare(this);
+		forEachChunk(population.size, (c, s, e) -> improvement.mutate(this, s, e, c, random(c)));
+	}
+	
+	@Override
+	public void mutate() {
+		mutation.prepare(this);
+		forEachChunk(population.size, (c, s, e) -> mutation.mutate(this, s, e, c, random(c)));
+	}
+	
+	@Override
+	public void generateFitness() {
+		evaluator.evaluate(population, 0, population.size);
+	}
+	
+	@Override
+	public void generateFitnessParallel() {
+		forEachChunk(population.size, (c, s, e) -> evaluator.evaluate(population, s, e));
+	}
+	
+	/**
+	 * Sets the number of threads generations are run with
+	 * 1 runs everything on the calling thread
+	 * 
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		if(runner != null) {
+			runner.shutdown();
+			runner = null;
+		}
+		
+		if(threads > 1) runner = new ParallelRunner(threads, rand);
+	}
+	
+	/**
+	 * @return number of threads generations are run with
+	 */
+	public int getThreads() {
+		return runner == null ? 1 : runner.getThreads();
+	}
+	
+	/**
+	 * @return number of chunks stages are split into, 1 on one thread
+	 */
+	public int getNumChunks() {
+		return runner == null ? 1 : runner.getNumChunks();
+	}
+	
+	/**
+	 * @param chunk
+	 * @return the random a chunk uses
+	 */
+	public Random random(int chunk) {
+		return runner == null ? rand : runner.random(chunk);
+	}
+	
+	/**
+	 * Finds the best individuals of the current generation, without disturbing order
+	 * 
+	 * @param count
+	 * @return indices of the best individuals, best first
+	 */
+	public int[] best(int count) {
+		int n = population.size;
+		count = Math.min(count, n);
+		
+		for(int i = 0; i < n; i++) scratch[i] = i;
+		
+		population.selectBest(scratch, 0, n, count);
+		population.sortByFitness(scratch, 0, count);
+		
+		return Arrays.copyOf(scratch, count);
+	}
+	
+	@Override
+	public double getBestFitness() {
+		return population.fitness[population.best()];
+	}
+	
+	@Override
+	public double getMeanFitness() {
+		double[] fitness = population.fitness;
+		double sum = 0;
+		
+		for(int i = 0; i < population.size; i++) sum += fitness[i];
+		
+		return sum / population.size;
+	}
+	
+	/**
+	 * @return the current generation
+	 */
+	public P getPopulation() {
+		return population;
+	}
+	
+	/**
+	 * @return the buffer the next generation is crossed into
+	 */
+	public P getNextPopulation() {
+		return nextPopulation;
+	}
+	
+	/**
+	 * @return indices of the parents of each child, elites first
+	 */
+	public int[] getSelected() {
+		return selected;
+	}
+	
+	/**
+	 * Only the elites and the individuals the selection ranks are in order, best() doesn't touch it
+	 * 
+	 * @return indices with the best individuals first, as left by the last rank()
+	 */
+	public int[] getOrder() {
+		return order;
+	}
+	
+	/**
+	 * @return number of individuals copied into the next generation unchanged
+	 */
+	public int getElites() {
+		return elites;
+	}
+	
+	/**
+	 * @return generations run since the population was made
+	 */
+	public int getNumGenerations() {
+		return numGenerations;
+	}
+}
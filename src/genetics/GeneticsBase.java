@@ -1,6 +1,13 @@
 package genetics;
 
 import java.awt.Graphics2D;
+import java.io.IOException;
+
+import checkpoint.StateReader;
+import checkpoint.StateWriter;
+
+import metrics.Phase;
+import metrics.PhaseMetrics;
 
 /**
  * Something to base genetic algorithm experiments off of
@@ -9,6 +16,12 @@ import java.awt.Graphics2D;
  */
 public abstract class GeneticsBase {
 	
+	// times each phase, null when off
+	PhaseMetrics metrics;
+	
+	// checked between phases to cut a generation short, null when there's no hurry
+	Deadline deadline;
+	
 	/**
 	 * Reset the simulation
 	 */
@@ -25,10 +38,92 @@ public abstract class GeneticsBase {
 	 * Run a full generation
 	 */
 	public void runGeneration() {
+		long t = beginGeneration();
+		
 		generateFitnessParallel();
+		t = endPhase(Phase.FITNESS, t);
+		
 		select();
+		t = endPhase(Phase.SELECT, t);
+		
+		// nothing has changed yet, so stopping here leaves the population as it was
+		if(deadlinePassed()) {
+			endGeneration();
+			return;
+		}
+		
 		cross();
-		mutate();
+		t = endPhase(Phase.CROSS, t);
+		
+		if(!deadlinePassed()) {
+			mutate();
+			endPhase(Phase.MUTATE, t);
+		}
+		
+		endGeneration();
+	}
+	
+	/**
+	 * Starts timing a generation if metrics are on
+	 * 
+	 * @return start time of the first phase
+	 */
+	protected long beginGeneration() {
+		return metrics == null ? 0 : metrics.beginGeneration();
+	}
+	
+	/**
+	 * Records a phase if metrics are on
+	 * 
+	 * @param phase
+	 * @param start start time of the phase
+	 * @return start time of the next phase
+	 */
+	protected long endPhase(Phase phase, long start) {
+		return metrics == null ? 0 : metrics.phase(phase, start);
+	}
+	
+	/**
+	 * Finishes timing a generation if metrics are on
+	 */
+	protected void endGeneration() {
+		if(metrics != null) metrics.endGeneration();
+	}
+	
+	/**
+	 * Turns timing of each phase on, or off with null
+	 * 
+	 * @param metrics
+	 */
+	public void setMetrics(PhaseMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return phase timings, or null if off
+	 */
+	public PhaseMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sets when generations should be cut short, checked between phases
+	 * 
+	 * @param deadline deadline, or null to always run whole generations
+	 */
+	public void setDeadline(Deadline deadline) {
+		this.deadline = deadline;
+	}
+	
+	public Deadline getDeadline() {
+		return deadline;
+	}
+	
+	/**
+	 * @return true if there's a deadline and it has passed
+	 */
+	protected boolean deadlinePassed() {
+		return deadline != null && deadline.passed();
 	}
 	
 	/**
@@ -60,9 +155,49 @@ public abstract class GeneticsBase {
 	public abstract void mutate();
 	
 	/**
-	 * Draw to the canvas
+	 * @return fitness of the best individual as of the last evaluation
+	 */
+	public abstract double getBestFitness();
+	
+	/**
+	 * @return mean fitness as of the last evaluation
+	 */
+	public abstract double getMeanFitness();
+	
+	/**
+	 * @return how spread out the population is, 0 when every individual is the same
+	 */
+	public abstract double getDiversity();
+	
+	/**
+	 * Draw to the canvas, from the thread running the simulation
 	 * 
 	 * @param g
 	 */
-	public abstract void draw(Graphics2D g);
+	public void draw(Graphics2D g) {
+		snapshot(null).draw(g);
+	}
+	
+	/**
+	 * Copies what gets drawn, so it can be drawn on another thread while this keeps running
+	 * 
+	 * @param reuse earlier snapshot from this simulation to overwrite, or null
+	 * @return snapshot of the current generation
+	 */
+	public abstract RenderSnapshot snapshot(RenderSnapshot reuse);
+	
+	/**
+	 * Writes everything needed to carry on from this point, for checkpoints
+	 * 
+	 * @param out
+	 */
+	public abstract void writeState(StateWriter out);
+	
+	/**
+	 * Restores state written by writeState()
+	 * 
+	 * @param in
+	 * @throws IOException if the state is damaged
+	 */
+	public abstract void readState(StateReader in) throws IOException;
 }
@@ -0,0 +1,75 @@
+package genetics;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A fitness heatmap drawn once and kept until what it shows changes
+ * Rows are colored in parallel into an image, so each frame only has to copy the image instead of
+ * evaluating fitness at every pixel. Shared by every snapshot of a simulation, any thread can get
+ * it.
+ * 
+ * @author Alex
+ */
+public class HeatmapCache {
+	
+	/**
+	 * Colors one pixel
+	 */
+	public interface Shader {
+		
+		/**
+		 * @param x
+		 * @param y
+		 * @return color of the pixel as 0xRRGGBB
+		 */
+		int rgb(int x, int y);
+	}
+	
+	BufferedImage image;
+	
+	int[][] key;
+	
+	/**
+	 * @param width
+	 * @param height
+	 * @param shader colors each pixel, called from several threads
+	 * @param key whatever the colors depend on besides the size, such as the targets
+	 * @return the heatmap, drawn again only if the size or key changed
+	 */
+	public synchronized BufferedImage get(int width, int height, Shader shader, int[]... key) {
+		if(image != null && image.getWidth() == width && image.getHeight() == height && Arrays.deepEquals(this.key, key)) {
+			return image;
+		}
+		
+		int[] pixels = new int[width * height];
+		
+		IntStream.range(0, height).parallel().forEach(y -> {
+			int row = y * width;
+			
+			for(int x = 0; x < width; x++) {
+				pixels[row + x] = shader.rgb(x, y);
+			}
+		});
+		
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		img.setRGB(0, 0, width, height, pixels, 0, width);
+		
+		this.image = img;
+		this.key = new int[key.length][];
+		for(int i = 0; i < key.length; i++) this.key[i] = key[i].clone();
+		
+		return img;
+	}
+	
+	/**
+	 * @param v 0 to 255, clamped
+	 * @return red with the other channels at v, like the heatmaps have always been
+	 */
+	static int red(int v) {
+		v = Math.max(0, Math.min(255, v));
+		
+		return 0xFF0000 | (v << 8) | v;
+	}
+}
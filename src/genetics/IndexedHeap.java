@@ -0,0 +1,119 @@
+package genetics;
+
+/**
+ * Binary heap of the individuals of a population by fitness, with the best or the worst on top
+ * Indexed, so when an individual's fitness changes only that one is moved, in O(log n)
+ * 
+ * @author Alex
+ */
+public class IndexedHeap {
+	
+	Population population;
+	
+	// 1 to put the best on top, -1 for the worst
+	final double direction;
+	
+	// heap[p] is the individual at position p, position[i] is where individual i is
+	int[] heap,
+		  position;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param worstFirst true to put the worst on top, false for the best
+	 */
+	public IndexedHeap(boolean worstFirst) {
+		direction = worstFirst ? -1 : 1;
+	}
+	
+	/**
+	 * Builds the heap over every individual of a population, in O(n)
+	 * 
+	 * @param population
+	 */
+	public void build(Population population) {
+		this.population = population;
+		
+		int n = population.size;
+		if(heap == null || heap.length != n) {
+			heap = new int[n];
+			position = new int[n];
+		}
+		
+		for(int i = 0; i < n; i++) {
+			heap[i] = i;
+			position[i] = i;
+		}
+		
+		for(int p = (n / 2) - 1; p >= 0; p--) {
+			down(p);
+		}
+	}
+	
+	/**
+	 * @return index of the individual on top
+	 */
+	public int top() {
+		return heap[0];
+	}
+	
+	/**
+	 * Moves an individual after its fitness changed
+	 * 
+	 * @param i index of the individual
+	 */
+	public void update(int i) {
+		int p = position[i];
+		
+		if(p > 0 && above(heap[p], heap[(p - 1) / 2])) up(p);
+		else down(p);
+	}
+	
+	/**
+	 * @param a
+	 * @param b
+	 * @return true if individual a belongs above individual b
+	 */
+	boolean above(int a, int b) {
+		double[] fitness = population.fitness;
+		return direction * population.sign * fitness[a] < direction * population.sign * fitness[b];
+	}
+	
+	void up(int p) {
+		int i = heap[p];
+		
+		while(p > 0) {
+			int parent = (p - 1) / 2;
+			if(!above(i, heap[parent])) break;
+			
+			place(heap[parent], p);
+			p = parent;
+		}
+		
+		place(i, p);
+	}
+	
+	void down(int p) {
+		int i = heap[p],
+			n = heap.length;
+		
+		while(true) {
+			int c = (2 * p) + 1;
+			if(c >= n) break;
+			
+			// the child that belongs higher
+			if(c + 1 < n && above(heap[c + 1], heap[c])) c++;
+			if(!above(heap[c], i)) break;
+			
+			place(heap[c], p);
+			p = c;
+		}
+		
+		place(i, p);
+	}
+	
+	void place(int i, int p) {
+		heap[p] = i;
+		position[i] = p;
+	}
+}
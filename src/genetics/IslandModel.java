@@ -0,0 +1,412 @@
+package genetics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runs several populations of the same problem at once, each on its own thread
+ * Islands evolve on their own and only meet every few generations, when each one sends copies of
+ * its best individuals to another. Migrants go through lock-free queues so no island ever waits
+ * for another.
+ * 
+ * @author Alex
+ * 
+ * @param <P> problem on each island
+ * @param <M> what an individual is carried as between islands
+ */
+public class IslandModel<P extends GeneticsBase & Migratable<M>, M> {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Generations each island runs between migrations, by default
+	public static final int DEFAULT_INTERVAL = 50;
+	
+	// Individuals each island sends per migration, by default
+	public static final int DEFAULT_MIGRANTS = 2;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	/**
+	 * Makes the population for an island
+	 */
+	public interface IslandFactory<P> {
+		/**
+		 * @param island index of the island
+		 * @return a new population
+		 */
+		P create(int island);
+	}
+	
+	/**
+	 * Hears about every migration, such as to pass migrants on to another process
+	 * Called on the island's thread, so it should return quickly
+	 */
+	public interface MigrationListener<M> {
+		/**
+		 * @param island island the migrants came from
+		 * @param migrants copies of its best individuals, best first
+		 */
+		void emigrated(int island, List<M> migrants);
+	}
+	
+	final List<P> islands;
+	
+	// migrants waiting to be taken in by each island
+	final List<ConcurrentLinkedQueue<M>> inboxes;
+	
+	final int numIslands;
+	
+	// generations run by each island
+	final AtomicLongArray generations;
+	
+	// picks targets for random migration, one per island
+	final Random[] randoms;
+	
+	// island the next migrant from outside goes to
+	final AtomicInteger nextReceiver = new AtomicInteger();
+	
+	volatile MigrationListener<M> listener;
+	
+	MigrationTopology topology = MigrationTopology.RING;
+	
+	int interval = DEFAULT_INTERVAL,
+		migrants = DEFAULT_MIGRANTS;
+	
+	Thread[] threads;
+	
+	volatile boolean running;
+	
+	volatile Throwable failure;
+	
+	// best individual any island has sent out, guarded by this
+	M best;
+	
+	double bestFitness = Double.NaN;
+	
+	int bestIsland = -1;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param numIslands number of populations, each gets its own thread
+	 * @param factory makes the population for each island
+	 */
+	public IslandModel(int numIslands, IslandFactory<P> factory) {
+		if(numIslands < 1) throw new IllegalArgumentException("need at least one island");
+		
+		this.numIslands = numIslands;
+		
+		islands = new ArrayList<>(numIslands);
+		inboxes = new ArrayList<>(numIslands);
+		generations = new AtomicLongArray(numIslands);
+		randoms = new Random[numIslands];
+		
+		Random seeds = new Random();
+		
+		for(int i = 0; i < numIslands; i++) {
+			islands.add(factory.create(i));
+			inboxes.add(new ConcurrentLinkedQueue<M>());
+			randoms[i] = new Random(seeds.nextLong());
+		}
+	}
+	
+	/**
+	 * Runs every island for a number of generations and waits for them to finish
+	 * 
+	 * @param numGenerations generations per island
+	 * @throws InterruptedException
+	 */
+	public void run(long numGenerations) throws InterruptedException {
+		start(numGenerations);
+		join();
+	}
+	
+	/**
+	 * Starts every island running until stop() is called
+	 */
+	public void start() {
+		start(Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Starts every island running for a number of generations
+	 * 
+	 * @param numGenerations generations per island
+	 */
+	public synchronized void start(long numGenerations) {
+		if(running) throw new IllegalStateException("already running");
+		
+		running = true;
+		failure = null;
+		threads = new Thread[numIslands];
+		
+		for(int i = 0; i < numIslands; i++) {
+			final int island = i;
+			
+			threads[i] = new Thread(() -> runIsland(island, numGenerations), "island-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+	
+	/**
+	 * Stops every island after its current generation and waits for them
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void stop() throws InterruptedException {
+		running = false;
+		join();
+	}
+	
+	/**
+	 * Waits for every island to finish
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void join() throws InterruptedException {
+		Thread[] t;
+		
+		synchronized(this) {
+			t = threads;
+		}
+		
+		if(t == null) return;
+		
+		for(int i = 0; i < t.length; i++) {
+			t[i].join();
+		}
+		
+		running = false;
+		
+		if(failure != null) throw new IllegalStateException("an island failed", failure);
+	}
+	
+	/**
+	 * Runs one island, migrating every interval generations
+	 * 
+	 * @param island
+	 * @param numGenerations
+	 */
+	void runIsland(int island, long numGenerations) {
+		P problem = islands.get(island);
+		
+		try {
+			long done = 0;
+			
+			while(running && done < numGenerations) {
+				long epoch = Math.min(interval, numGenerations - done);
+				
+				for(long g = 0; g < epoch && running; g++) {
+					problem.runGeneration();
+					
+					done++;
+					generations.lazySet(island, generations.get(island) + 1);
+				}
+				
+				migrate(island, problem);
+			}
+		} catch(Throwable t) {
+			// take the others down too, join() reports it
+			failure = t;
+			running = false;
+		}
+	}
+	
+	/**
+	 * Sends an island's best individuals out and takes in any that have arrived
+	 * 
+	 * @param island
+	 * @param problem
+	 */
+	void migrate(int island, P problem) {
+		List<M> out = problem.emigrants(migrants);
+		
+		if(!out.isEmpty()) {
+			offerBest(island, out.get(0), problem.fitness(out.get(0)));
+			
+			if(numIslands > 1) inboxes.get(target(island)).addAll(out);
+			
+			MigrationListener<M> l = listener;
+			if(l != null) l.emigrated(island, out);
+		}
+		
+		ConcurrentLinkedQueue<M> inbox = inboxes.get(island);
+		List<M> in = new ArrayList<>();
+		M m;
+		
+		while((m = inbox.poll()) != null) in.add(m);
+		
+		// an island that fell behind only takes the newest, at most one batch from every other island
+		int limit = migrants * Math.max(1, numIslands - 1);
+		if(in.size() > limit) in = in.subList(in.size() - limit, in.size());
+		
+		if(!in.isEmpty()) problem.immigrate(in);
+	}
+	
+	/**
+	 * @param island
+	 * @return island to send migrants to
+	 */
+	int target(int island) {
+		switch(topology) {
+			case RANDOM:
+				int t = randoms[island].nextInt(numIslands - 1);
+				return t >= island ? t + 1 : t;
+			
+			default:
+				return (island + 1) % numIslands;
+		}
+	}
+	
+	/**
+	 * Keeps an individual if it's the best seen so far
+	 * 
+	 * @param island where it came from
+	 * @param individual
+	 * @param fitness
+	 */
+	synchronized void offerBest(int island, M individual, double fitness) {
+		boolean better = islands.get(island).minimizesFitness() ? fitness < bestFitness : fitness > bestFitness;
+		
+		if(bestIsland < 0 || better) {
+			best = individual;
+			bestFitness = fitness;
+			bestIsland = island;
+		}
+	}
+	
+	/**
+	 * Hands a migrant from outside the model to the islands, spread over them in turn
+	 * Safe to call from any thread
+	 * 
+	 * @param migrant
+	 */
+	public void receive(M migrant) {
+		int island = Math.floorMod(nextReceiver.getAndIncrement(), numIslands);
+		inboxes.get(island).add(migrant);
+	}
+	
+	/**
+	 * Sets what hears about migrations, or null for nothing
+	 * 
+	 * @param listener
+	 */
+	public void setMigrationListener(MigrationListener<M> listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Sets where islands send migrants
+	 * 
+	 * @param topology
+	 */
+	public void setTopology(MigrationTopology topology) {
+		checkStopped();
+		this.topology = topology;
+	}
+	
+	/**
+	 * Sets the generations each island runs between migrations
+	 * 
+	 * @param interval
+	 */
+	public void setInterval(int interval) {
+		checkStopped();
+		this.interval = Math.max(1, interval);
+	}
+	
+	/**
+	 * Sets the individuals each island sends per migration
+	 * 
+	 * @param migrants
+	 */
+	public void setMigrants(int migrants) {
+		checkStopped();
+		this.migrants = Math.max(0, migrants);
+	}
+	
+	/**
+	 * Settings are read by the island threads, so they can't change while running
+	 */
+	void checkStopped() {
+		if(running) throw new IllegalStateException("can't change settings while running");
+	}
+	
+	/**
+	 * @return best individual sent out by any island so far, or null if none has migrated yet
+	 */
+	public synchronized M getBest() {
+		return best;
+	}
+	
+	/**
+	 * @return fitness of getBest(), NaN if there isn't one yet
+	 */
+	public synchronized double getBestFitness() {
+		return bestFitness;
+	}
+	
+	/**
+	 * @return island getBest() came from, or -1
+	 */
+	public synchronized int getBestIsland() {
+		return bestIsland;
+	}
+	
+	/**
+	 * The population of an island
+	 * Its thread is still using it while running
+	 * 
+	 * @param island
+	 * @return
+	 */
+	public P getIsland(int island) {
+		return islands.get(island);
+	}
+	
+	/**
+	 * @return number of islands
+	 */
+	public int getNumIslands() {
+		return numIslands;
+	}
+	
+	/**
+	 * @param island
+	 * @return generations the island has run
+	 */
+	public long getGenerations(int island) {
+		return generations.get(island);
+	}
+	
+	/**
+	 * @return generations run by all islands together
+	 */
+	public long getTotalGenerations() {
+		long total = 0;
+		
+		for(int i = 0; i < numIslands; i++) {
+			total += generations.get(i);
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * @return true if the islands are running
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+}
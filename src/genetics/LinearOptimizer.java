@@ -3,10 +3,15 @@ package genetics;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
+import checkpoint.SavableRandom;
+import checkpoint.StateReader;
+import checkpoint.StateWriter;
 import graphics.APBioSimulation;
 
 /**
@@ -14,7 +19,7 @@ import graphics.APBioSimulation;
  * 
  * @author Alex
  */
-public class LinearOptimizer extends GeneticsBase {
+public class LinearOptimizer extends GeneticEngine<VectorPopulation> implements Migratable<double[]> {
 	
 	/*
 	 * PARAMETERS
@@ -24,27 +29,33 @@ public class LinearOptimizer extends GeneticsBase {
 	// The probability that a pair will be crossed rather than copied. Range 0-1
 	final double CROSS_PROBABILITY = 0.1;
 	
+	// Parents are the best of this many individuals picked at random
+	final int TOURNAMENT_SIZE = 8;
+	
+	// Probability a point is mutated
+	final double MUTATION_PROBABILITY = 0.1;
+	
 	// Mutations add a value taken from a bell curve with this standard deviation
 	final double MUTATION_STD_DEVIATION = 5;
 	
+	// If true, and src-vector is compiled in and the JVM has the Vector API, fitness is evaluated
+	// several individuals at a time with SIMD instructions. Both give exactly the same fitness
+	final boolean VECTOR_FITNESS = true;
+	
 	
 	/*
 	 * CODE
 	 * Change at your own risk
 	 */
 	
-	double[][] points,
-			   selectedPoints;
-	
-	double[] fitness;
-	
 	double minFitness, maxFitness;
 	
 	int[] xLow, xHigh;
 	
 	int width, height;
 	
-	Random rand = new Random();
+	// fitness heatmap shared by the snapshots
+	final HeatmapCache heatmap = new HeatmapCache();
 	
 	/**
 	 * constructor
@@ -63,38 +74,56 @@ public class LinearOptimizer extends GeneticsBase {
 		width = APBioSimulation.WIDTH;
 		height = APBioSimulation.HEIGHT;
 		
-		points = new double[numPoints][2];
-		initPopulation();
+		// select parents by placing them in adjacent pairs, best of 8 at random
+		selection = new TournamentSelection(TOURNAMENT_SIZE);
+		
+		// there's only 2 genes so uniform crossover
+		crossover = new UniformCrossover(CROSS_PROBABILITY);
+		mutation = new GaussianMutation(MUTATION_PROBABILITY, MUTATION_STD_DEVIATION, 0);
+		evaluator = this::fitnessRange;
 		
-		selectedPoints = new double[numPoints / 2][2];
-		fitness = new double[numPoints];
+		setPopulation(newPopulation(numPoints), newPopulation(numPoints));
+		initPopulation();
+	}
+	
+	/**
+	 * @param size
+	 * @return an empty population of points on the canvas
+	 */
+	VectorPopulation newPopulation(int size) {
+		return new VectorPopulation(size, new double[] {0, 0}, new double[] {width, height}, true);
 	}
 	
 	@Override
 	public void initPopulation() {
-		for(int i = 0; i < points.length; i++) {
-			points[i][0] = (float) (rand.nextFloat() * width);
-			points[i][1] = (float) (rand.nextFloat() * height);
-		}
+		super.initPopulation();
 		
-		// find min/max possible fitness
-		minFitness = fitness(0, 0);
-		maxFitness = minFitness;
-		for(int x = 0; x < width; x++) {
-			for(int y = 0; y < height; y++) {
-				double f = fitness(x, y);
-				
-				if(f > maxFitness) maxFitness = f;
-				else if(f < minFitness) minFitness = f;
-			}
-		}
+		// find min/max possible fitness, distance to lines is convex
+		double[] bounds = FitnessBounds.convex("linear", width, height, (x, y) -> fitness(x, y), xLow, xHigh);
+		minFitness = bounds[0];
+		maxFitness = bounds[1];
 	}
-
-	@Override
-	public void generateFitness() {
-		for(int i = 0; i < points.length; i++) {
-			fitness[i] = fitness(points[i][0], points[i][1]);
+	
+	/**
+	 * Generates fitness for a range of points
+	 * 
+	 * @param pop
+	 * @param start first index, inclusive
+	 * @param end last index, exclusive
+	 */
+	void fitnessRange(VectorPopulation pop, int start, int end) {
+		double[] px = pop.genes[0],
+				 py = pop.genes[1];
+		
+		if(VECTOR_FITNESS) {
+			fitness(px, py, start, end, xLow, xHigh, height, pop.fitness);
+		} else {
+			for(int i = start; i < end; i++) {
+				pop.fitness[i] = fitness(px[i], py[i]);
+			}
 		}
+		
+		Arrays.fill(pop.evaluated, start, end, true);
 	}
 	
 	/**
@@ -104,125 +133,214 @@ public class LinearOptimizer extends GeneticsBase {
 	 * @param y
 	 */
 	public double fitness(double x, double y) {
-		double fitness = 0,
-			   ax = 0,
-			   ay = (double) height,
-			   bx = 0,
-			   by = 0;
-			
+		return fitness(x, y, xLow, xHigh, height);
+	}
+	
+	/**
+	 * Determines the fitness of a position for a given set of lines
+	 * 
+	 * @param x
+	 * @param y
+	 * @param xLow X position of the lower point of each line
+	 * @param xHigh X position of the upper point of each line
+	 * @param height y of the lower points
+	 */
+	public static double fitness(double x, double y, int[] xLow, int[] xHigh, int height) {
+		double fitness = 0;
+		
 		// fitness is the sum of distances to lines
 		for(int j = 0; j < xLow.length; j++) {
-			ax = xLow[j];
-			bx = xHigh[j];
+			double a = -height,
+				   b = xLow[j] - xHigh[j],
+				   c = (double) height * xHigh[j],
+				   scale = 1 / Math.sqrt((b * b) + (a * a));
 			
-			// distance from a point to a line defined by two points from wikipedia
-			fitness += Math.max(0, ((double) Math.abs(((bx - ax)*(ay - y) - (ax - x)*(by - ay)) / Math.sqrt(((bx - ax)*(bx - ax)) + ((by - ay)*(by - ay))))));
+			fitness += Math.abs((a * x) + (b * y) + c) * scale;
 		}
 		
 		return fitness;
 	}
-
-	@Override
-	public void select() {
-		// select parents by placing them in adjacent pairs
-		// we'll use 4 way tournament selection here
-		for(int i = 0; i < selectedPoints.length; i++) {
-			ArrayList<Double> fitnesses = new ArrayList<>(); // for collections
-			ArrayList<Integer> indicies = new ArrayList<>(); // we need to know where they come from
-			
-			// grab 8 at random
-			for(int j = 0; j < 8; j++) {
-				int ind = rand.nextInt(fitness.length);
-				fitnesses.add(fitness[ind]);
-				indicies.add(ind);
-			}
-			
-			// take the best
-			int ind = indicies.get(fitnesses.indexOf(Collections.min(fitnesses)));
-			selectedPoints[i][0] = points[ind][0];
-			selectedPoints[i][1] = points[ind][1];
+	
+	/**
+	 * Determines the fitness of a range of positions, exactly the same as fitness(x, y) on each
+	 * With the Vector API when it's there, otherwise one position at a time
+	 * 
+	 * @param xs x of each position
+	 * @param ys y of each position
+	 * @param start first position, inclusive
+	 * @param end last position, exclusive
+	 * @param xLow X position of the lower point of each line
+	 * @param xHigh X position of the upper point of each line
+	 * @param height y of the lower points
+	 * @param out fitness of each position
+	 */
+	public static void fitness(double[] xs, double[] ys, int start, int end, int[] xLow, int[] xHigh, int height, double[] out) {
+		VectorKernels kernels = VectorKernels.INSTANCE;
+		
+		if(kernels != null) {
+			kernels.linear(xs, ys, start, end, xLow, xHigh, height, out);
+			return;
+		}
+		
+		for(int i = start; i < end; i++) {
+			out[i] = fitness(xs[i], ys[i], xLow, xHigh, height);
 		}
 	}
 
+	/**
+	 * Root mean square distance of the points from their center
+	 */
 	@Override
-	public void cross() {
-		// produce 4 children per pair to fill our population
-		for(int i = 0; i < selectedPoints.length; i += 2) {
-			// 2 pairs
-			for(int j = 0; j < 2; j++) {
-				// there's only 2 genes so uniform crossover
-				// 50/50 whether we cross or not
-				for(int k = 0; k < 2; k++) {
-					if(rand.nextFloat() > CROSS_PROBABILITY) {
-						points[2*(i + j)][k] = selectedPoints[i][k];
-						points[2*(i + j) + 1][k] = selectedPoints[i + 1][k];
-					} else {
-						points[2*(i + j)][k] = selectedPoints[i + 1][k];
-						points[2*(i + j) + 1][k] = selectedPoints[i][k];
-					}
-				}
-			}
-		}
+	public double getDiversity() {
+		return population.spread();
 	}
 	
 	@Override
-	public void mutate() {
-		// if we mutate, add a value in [-5, 5]
-		for(int i = 0; i < points.length; i++) {
-			/*
-			for(int j = 0; j < 2; j++) {
-				if(rand.nextFloat() > 0.9) {
-					points[i][j] += rand.nextGaussian() * 10;
-				}
-			}
-			*/
-			
-			if(rand.nextFloat() > 0.9) {
-				points[i][0] += rand.nextGaussian() * MUTATION_STD_DEVIATION;
-				points[i][1] += rand.nextGaussian() * MUTATION_STD_DEVIATION;
-			}
+	public List<double[]> emigrants(int count) {
+		generateFitness();
+		
+		List<double[]> out = new ArrayList<>(count);
+		for(int i : best(count)) {
+			out.add(population.getVector(i));
 		}
 		
-		// cleanup - make sure we stay in bounds
-		for(int i = 0; i < points.length; i++) {
-			if(points[i][0] < 0) points[i][0] = 0;
-			if(points[i][0] > width) points[i][0] = width;
+		return out;
+	}
+	
+	@Override
+	public void immigrate(List<double[]> migrants) {
+		generateFitness();
+		
+		for(double[] p : migrants) {
+			// replace the worst
+			int worst = population.worst();
 			
-			if(points[i][1] < 0) points[i][1] = 0;
-			if(points[i][1] > height) points[i][1] = height;
+			population.setVector(worst, p);
+			population.clamp(worst);
+			fitnessRange(population, worst, worst + 1);
 		}
 	}
+	
+	@Override
+	public double fitness(double[] individual) {
+		return fitness(individual[0], individual[1]);
+	}
+	
+	@Override
+	public boolean minimizesFitness() {
+		return true;
+	}
+	
+	@Override
+	public void writeState(StateWriter out) {
+		out.putInt(width);
+		out.putInt(height);
+		out.putInts(xLow);
+		out.putInts(xHigh);
+		out.putDouble(minFitness);
+		out.putDouble(maxFitness);
+		
+		// points as x, y pairs
+		out.putDoubles(population.interleaved());
+		out.putRandom(rand);
+	}
+	
+	@Override
+	public void readState(StateReader in) throws IOException {
+		int w = in.getInt(),
+			h = in.getInt();
+		int[] low = in.getInts(),
+			  high = in.getInts();
+		double min = in.getDouble(),
+			   max = in.getDouble();
+		double[] flat = in.getDoubles();
+		SavableRandom r = in.getRandom();
+		
+		if(low == null || high == null || low.length != high.length || flat == null || flat.length % 2 != 0 || flat.length == 0) throw new IOException("bad linear optimizer state");
+		
+		width = w;
+		height = h;
+		xLow = low;
+		xHigh = high;
+		minFitness = min;
+		maxFitness = max;
+		
+		int n = flat.length / 2;
+		setPopulation(newPopulation(n), newPopulation(n));
+		population.setInterleaved(flat);
+		
+		rand = r;
+		
+		// chunk randoms come from rand
+		setThreads(getThreads());
+		generateFitness();
+	}
 
 	@Override
-	public void draw(Graphics2D g) {
-		g.setStroke(new BasicStroke(2f));
+	public RenderSnapshot snapshot(RenderSnapshot reuse) {
+		Snapshot s = reuse instanceof Snapshot ? (Snapshot) reuse : new Snapshot();
 		
-		// draw heatmap of fitness in red
-		for(int x = 0; x < width; x++) {
-			for(int y = 0; y < height; y++) {
-				double fitness = fitness(x, y);
-				
-				double v = 1 - ((fitness - minFitness) / (maxFitness - minFitness));
-				int col = Math.max(0, Math.min(255, (int) (255 * (1 - (v * v * v)))));
-				//if(x == 50) System.out.println(fitness + ": " + col);
-				
-				g.setColor(new Color(255, col, col));
-				g.drawRect(x, y, 1, 1);
-			}
-		}
+		s.width = width;
+		s.height = height;
+		s.minFitness = minFitness;
+		s.maxFitness = maxFitness;
+		s.xLow = RenderSnapshot.fit(s.xLow, xLow.length);
+		s.xHigh = RenderSnapshot.fit(s.xHigh, xHigh.length);
+		System.arraycopy(xLow, 0, s.xLow, 0, xLow.length);
+		System.arraycopy(xHigh, 0, s.xHigh, 0, xHigh.length);
 		
-		g.setColor(Color.black);
+		s.heatmap = heatmap;
+		double[] px = population.genes[0],
+				 py = population.genes[1];
 		
-		// dividing lines
-		for(int i = 0; i < xLow.length; i++) {
-			g.drawLine(xLow[i], height, xHigh[i], 0);
+		s.points = RenderSnapshot.fit(s.points, population.size * 2);
+		for(int i = 0; i < population.size; i++) {
+			s.points[2*i] = px[i];
+			s.points[2*i + 1] = py[i];
 		}
 		
-		// draw points
-		for(int i = 0; i < points.length; i++) {
-			g.fillRect((int) points[i][0] - 3, (int) points[i][1] - 3, 5, 5);
-		}
+		return s;
+	}
+	
+	/**
+	 * What a LinearOptimizer draws
+	 */
+	static class Snapshot extends RenderSnapshot {
+		
+		int width, height;
 		
-		System.out.println("frame drawn");
+		double minFitness, maxFitness;
+		
+		int[] xLow, xHigh;
+		
+		// x, y pairs
+		double[] points;
+		
+		HeatmapCache heatmap;
+		
+		@Override
+		public void draw(Graphics2D g) {
+			g.setStroke(new BasicStroke(2f));
+			
+			// heatmap of fitness in red, only drawn again when the targets change
+			g.drawImage(heatmap.get(width, height, (x, y) -> {
+				double v = 1 - ((fitness(x, y, xLow, xHigh, height) - minFitness) / (maxFitness - minFitness));
+				int col = (int) (255 * (1 - (v * v * v)));
+				
+				return HeatmapCache.red(col);
+			}, xLow, xHigh), 0, 0, null);
+			
+			g.setColor(Color.black);
+			
+			// dividing lines
+			for(int i = 0; i < xLow.length; i++) {
+				g.drawLine(xLow[i], height, xHigh[i], 0);
+			}
+			
+			// draw points
+			for(int i = 0; i < points.length; i += 2) {
+				g.fillRect((int) points[i] - 3, (int) points[i + 1] - 3, 5, 5);
+			}
+		}
 	}
 }
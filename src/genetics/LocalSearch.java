@@ -0,0 +1,374 @@
+package genetics;
+
+/**
+ * Improves a single path with 2-opt and Or-opt moves
+ * Moves are only tried towards each city's nearest neighbors, and cities that didn't lead to an
+ * improvement are skipped until one of their edges changes (don't-look bits)
+ * 
+ * Keeps scratch arrays for one path at a time. Not thread safe, give each thread its own.
+ * 
+ * @author Alex
+ */
+public class LocalSearch {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Longest run of cities an Or-opt move will move
+	public static final int MAX_SEGMENT = 3;
+	
+	// Improvements smaller than this are ignored so rounding can't make moves cycle forever
+	static final double EPSILON = 1e-7;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	final DistanceProvider distances;
+	
+	final NeighborLists neighbors;
+	
+	final int n;
+	
+	// true if the path returns to its first city
+	final boolean closed;
+	
+	// pos[city] = index of the city in the path
+	final int[] pos;
+	
+	// circular queue of cities to look at
+	final int[] queue;
+	
+	// true if the city is in the queue, false if its don't-look bit is set
+	final boolean[] active;
+	
+	int head,
+		count;
+	
+	// path being improved
+	int[] t;
+	int o;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param distances
+	 * @param neighbors candidate lists moves are limited to
+	 * @param closed true if paths return to their first city
+	 */
+	public LocalSearch(DistanceProvider distances, NeighborLists neighbors, boolean closed) {
+		this.distances = distances;
+		this.neighbors = neighbors;
+		this.n = distances.size();
+		this.closed = closed;
+		
+		pos = new int[n];
+		queue = new int[n];
+		active = new boolean[n];
+	}
+	
+	/**
+	 * Improves a path in place until no more moves help
+	 * 
+	 * @param path array holding the path
+	 * @param offset index of the first city of the path
+	 * @return how much shorter the path got
+	 */
+	public double improve(int[] path, int offset) {
+		t = path;
+		o = offset;
+		
+		head = 0;
+		count = 0;
+		
+		for(int i = 0; i < n; i++) {
+			pos[t[o + i]] = i;
+			push(t[o + i]);
+		}
+		
+		double gain = 0;
+		
+		while(count > 0) {
+			int c = queue[head];
+			head = (head + 1) % n;
+			count--;
+			active[c] = false;
+			
+			double g = twoOpt(c);
+			if(g <= 0) g = orOpt(c);
+			
+			// keep looking at a city until it stops helping
+			if(g > 0) {
+				gain += g;
+				push(c);
+			}
+		}
+		
+		t = null;
+		return gain;
+	}
+	
+	/**
+	 * Queues a city to be looked at if it isn't already
+	 * 
+	 * @param c
+	 */
+	void push(int c) {
+		if(!active[c]) {
+			active[c] = true;
+			queue[(head + count++) % n] = c;
+		}
+	}
+	
+	/**
+	 * Queues the city at a position, if there is one
+	 * 
+	 * @param i
+	 */
+	void pushAt(int i) {
+		if(i >= 0) push(t[o + i]);
+	}
+	
+	/**
+	 * @param i
+	 * @return position before i, or -1 if there isn't one
+	 */
+	int before(int i) {
+		if(i > 0) return i - 1;
+		return closed ? n - 1 : -1;
+	}
+	
+	/**
+	 * @param i
+	 * @return position after i, or -1 if there isn't one
+	 */
+	int after(int i) {
+		if(i < n - 1) return i + 1;
+		return closed ? 0 : -1;
+	}
+	
+	/**
+	 * @param i
+	 * @param j
+	 * @return distance between the cities at two positions, 0 if either doesn't exist
+	 */
+	double d(int i, int j) {
+		if(i < 0 || j < 0) return 0;
+		
+		return distances.dist(t[o + i], t[o + j]);
+	}
+	
+	/**
+	 * Tries 2-opt moves that make an edge between c and one of its neighbors
+	 * 
+	 * @param c
+	 * @return gain of the move made, 0 if none
+	 */
+	double twoOpt(int c) {
+		int pc = pos[c];
+		
+		// a new edge longer than both of c's current edges can't help
+		double limit = Math.max(d(before(pc), pc), d(pc, after(pc)));
+		
+		for(int k = 0; k < neighbors.size(); k++) {
+			int nb = neighbors.get(c, k);
+			
+			if(distances.dist(c, nb) >= limit) break;
+			
+			int pn = pos[nb],
+				lo = Math.min(pc, pn),
+				hi = Math.max(pc, pn);
+			
+			// already adjacent
+			if(hi - lo < 2) continue;
+			
+			// reversing either of these makes the cities at lo and hi adjacent
+			double g = reverseGain(lo + 1, hi);
+			if(g > EPSILON) {
+				reverse(lo + 1, hi);
+				return g;
+			}
+			
+			g = reverseGain(lo, hi - 1);
+			if(g > EPSILON) {
+				reverse(lo, hi - 1);
+				return g;
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * @param i first position, inclusive
+	 * @param j last position, inclusive
+	 * @return how much shorter the path gets if [i, j] is reversed
+	 */
+	double reverseGain(int i, int j) {
+		int a = before(i),
+			b = after(j);
+		
+		return (d(a, i) + d(j, b)) - (d(a, j) + d(i, b));
+	}
+	
+	/**
+	 * Reverses [i, j] and queues the ends of the changed edges
+	 * 
+	 * @param i first position, inclusive
+	 * @param j last position, inclusive
+	 */
+	void reverse(int i, int j) {
+		pushAt(before(i));
+		pushAt(after(j));
+		pushAt(i);
+		pushAt(j);
+		
+		flip(i, j);
+	}
+	
+	/**
+	 * Reverses [i, j] and updates positions
+	 * 
+	 * @param i first position, inclusive
+	 * @param j last position, inclusive
+	 */
+	void flip(int i, int j) {
+		for(; i < j; i++, j--) {
+			int a = t[o + i],
+				b = t[o + j];
+			
+			t[o + i] = b;
+			t[o + j] = a;
+			pos[b] = i;
+			pos[a] = j;
+		}
+		
+		if(i == j) pos[t[o + i]] = i;
+	}
+	
+	/**
+	 * Tries moving a short run of cities starting or ending at c next to one of c's neighbors
+	 * 
+	 * @param c
+	 * @return gain of the move made, 0 if none
+	 */
+	double orOpt(int c) {
+		int pc = pos[c];
+		
+		// a closed path needs two cities outside the segment for a move to mean anything
+		int longest = Math.min(MAX_SEGMENT, closed ? n - 2 : n - 1);
+		
+		for(int len = 1; len <= longest; len++) {
+			// segment starting at c, then segment ending at c
+			for(int side = 0; side < 2; side++) {
+				if(len == 1 && side == 1) break;
+				
+				int s = side == 0 ? pc : pc - len + 1,
+					e = s + len - 1;
+				
+				if(s < 0 || e >= n) continue;
+				
+				double g = moveSegment(c, s, e);
+				if(g > 0) return g;
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Tries moving [s, e] next to one of c's neighbors, in either direction
+	 * 
+	 * @param c city at one end of the segment
+	 * @param s first position of the segment
+	 * @param e last position of the segment
+	 * @return gain of the move made, 0 if none
+	 */
+	double moveSegment(int c, int s, int e) {
+		int a = before(s),
+			b = after(e);
+		
+		// what taking the segment out saves
+		double removed = d(a, s) + d(e, b) - d(a, b);
+		
+		for(int k = 0; k < neighbors.size(); k++) {
+			int nb = neighbors.get(c, k);
+			
+			// the edge to the neighbor costs more than is saved
+			if(distances.dist(c, nb) >= removed) break;
+			
+			int pn = pos[nb];
+			
+			// gap after the neighbor, then gap before it
+			for(int side = 0; side < 2; side++) {
+				int g = side == 0 ? pn : before(pn);
+				
+				// inside or right next to the segment
+				if(g == a || (g >= s && g <= e)) continue;
+				
+				int h = g < 0 ? 0 : after(g);
+				
+				double close = d(g, h),
+					   forward = d(g, s) + d(e, h) - close,
+					   backward = d(g, e) + d(s, h) - close;
+				
+				boolean reversed = backward < forward;
+				double gain = removed - (reversed ? backward : forward);
+				
+				if(gain > EPSILON) {
+					move(s, e, g, reversed);
+					return gain;
+				}
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Moves [s, e] into the gap after position g and queues the ends of the changed edges
+	 * 
+	 * @param s first position of the segment
+	 * @param e last position of the segment
+	 * @param g position the segment goes after, -1 for the front
+	 * @param reversed true to reverse the segment too
+	 */
+	void move(int s, int e, int g, boolean reversed) {
+		int len = e - s + 1;
+		
+		pushAt(before(s));
+		pushAt(after(e));
+		pushAt(s);
+		pushAt(e);
+		pushAt(g);
+		pushAt(g < 0 ? 0 : after(g));
+		
+		if(g > e) {
+			// shift everything between left, segment ends at g
+			rotate(s, g, len);
+			if(reversed) flip(g - len + 1, g);
+		} else {
+			// shift everything between right, segment starts at g + 1
+			rotate(g + 1, e, (e - g) - len);
+			if(reversed) flip(g + 1, g + len);
+		}
+	}
+	
+	/**
+	 * Rotates [i, j] left by r with three reversals
+	 * 
+	 * @param i first position, inclusive
+	 * @param j last position, inclusive
+	 * @param r
+	 */
+	void rotate(int i, int j, int r) {
+		if(r <= 0 || r > j - i) return;
+		
+		flip(i, i + r - 1);
+		flip(i + r, j);
+		flip(i, j);
+	}
+}
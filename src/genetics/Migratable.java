@@ -0,0 +1,41 @@
+package genetics;
+
+import java.util.List;
+
+/**
+ * A problem whose individuals can move between populations, such as the islands of an IslandModel
+ * 
+ * @author Alex
+ * 
+ * @param <M> what an individual is carried as between populations
+ */
+public interface Migratable<M> {
+	
+	/**
+	 * Copies the best individuals so they can be sent to another population
+	 * 
+	 * @param count number of individuals
+	 * @return copies of the best individuals, best first
+	 */
+	public List<M> emigrants(int count);
+	
+	/**
+	 * Replaces the worst individuals with the migrants
+	 * 
+	 * @param migrants individuals from another population
+	 */
+	public void immigrate(List<M> migrants);
+	
+	/**
+	 * Evaluates an individual
+	 * 
+	 * @param individual
+	 * @return fitness of the individual
+	 */
+	public double fitness(M individual);
+	
+	/**
+	 * @return true if lower fitness is better
+	 */
+	public boolean minimizesFitness();
+}
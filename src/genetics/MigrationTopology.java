@@ -0,0 +1,11 @@
+package genetics;
+
+/**
+ * Where an island sends its migrants
+ * 
+ * @author Alex
+ */
+public enum MigrationTopology {
+	RING,	// to the next island, wrapping around
+	RANDOM	// to a random other island each time
+}
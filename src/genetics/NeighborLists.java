@@ -0,0 +1,91 @@
+package genetics;
+
+/**
+ * The k nearest cities to every city, nearest first
+ * Stored flat, city c's neighbors are neighbors[c * k] to neighbors[(c + 1) * k - 1]
+ * 
+ * @author Alex
+ */
+public class NeighborLists {
+	
+	final int[] neighbors;
+	
+	final int k;
+	
+	/**
+	 * Finds the nearest neighbors of every city by checking every other city
+	 * 
+	 * @param distances
+	 * @param k number of neighbors per city, reduced if there aren't enough cities
+	 */
+	public NeighborLists(DistanceProvider distances, int k) {
+		int n = distances.size();
+		
+		this.k = Math.max(0, Math.min(k, n - 1));
+		this.neighbors = new int[n * this.k];
+		
+		double[] nearest = new double[this.k];
+		
+		for(int a = 0; a < n; a++) {
+			int o = a * this.k,
+				found = 0;
+			
+			// keep the closest k seen so far in sorted order
+			for(int b = 0; b < n; b++) {
+				if(b == a) continue;
+				
+				double d = distances.dist(a, b);
+				
+				if(found < this.k || d < nearest[found - 1]) {
+					int j = found < this.k ? found++ : found - 1;
+					
+					while(j > 0 && nearest[j - 1] > d) {
+						nearest[j] = nearest[j - 1];
+						neighbors[o + j] = neighbors[o + j - 1];
+						j--;
+					}
+					
+					nearest[j] = d;
+					neighbors[o + j] = b;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Finds the nearest neighbors of every city with a grid over their coordinates
+	 * 
+	 * @param grid grid over the cities
+	 * @param k number of neighbors per city, reduced if there aren't enough cities
+	 */
+	public NeighborLists(UniformGrid grid, int k) {
+		int n = grid.size();
+		
+		this.k = Math.max(0, Math.min(k, n - 1));
+		this.neighbors = new int[n * this.k];
+		
+		int[] found = new int[this.k];
+		double[] dist = new double[this.k];
+		
+		for(int a = 0; a < n; a++) {
+			grid.nearest(grid.xs[a], grid.ys[a], this.k, a, found, dist);
+			System.arraycopy(found, 0, neighbors, a * this.k, this.k);
+		}
+	}
+	
+	/**
+	 * @param city
+	 * @param i rank of the neighbor, 0 is the nearest
+	 * @return the ith nearest neighbor of city
+	 */
+	public int get(int city, int i) {
+		return neighbors[(city * k) + i];
+	}
+	
+	/**
+	 * @return number of neighbors per city
+	 */
+	public int size() {
+		return k;
+	}
+}
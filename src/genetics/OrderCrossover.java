@@ -0,0 +1,78 @@
+package genetics;
+
+import java.util.Arrays;
+
+/**
+ * OX1 ordered crossover on primitive paths
+ * Copies a segment from the first parent, then copies the missing cities in the order they appear
+ * on the second parent, starting from the end of the segment
+ * 
+ * Keeps a stamped marker array so each child is O(n) with no allocation. Not thread safe, give
+ * each thread its own.
+ * 
+ * @author Alex
+ */
+public class OrderCrossover {
+	
+	final int length;
+	
+	// marks[city] == stamp if the city is already in the child
+	final int[] marks;
+	
+	int stamp;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param length number of cities in a path
+	 */
+	public OrderCrossover(int length) {
+		this.length = length;
+		this.marks = new int[length];
+		this.stamp = 0;
+	}
+	
+	/**
+	 * Crosses two parents into a child. The child must not share storage with either parent.
+	 * 
+	 * @param p1 array holding the first parent
+	 * @param p1Offset index of the first parent's first city
+	 * @param p2 array holding the second parent
+	 * @param p2Offset index of the second parent's first city
+	 * @param child array to write the child into
+	 * @param childOffset index of the child's first city
+	 * @param start start of the segment copied from the first parent, inclusive
+	 * @param end end of the segment copied from the first parent, exclusive
+	 */
+	public void cross(int[] p1, int p1Offset, int[] p2, int p2Offset, int[] child, int childOffset, int start, int end) {
+		// new stamp, clearing marks only when it wraps around
+		if(++stamp == 0) {
+			Arrays.fill(marks, 0);
+			stamp = 1;
+		}
+		
+		// copy from first
+		for(int j = start; j < end; j++) {
+			int city = p1[p1Offset + j];
+			
+			child[childOffset + j] = city;
+			marks[city] = stamp;
+		}
+		
+		// copy from second
+		// j is source index k is dest index
+		int remaining = length - (end - start);
+		for(int j = end, k = end; remaining > 0; j++) {
+			if(j >= length) j = 0;
+			
+			int city = p2[p2Offset + j];
+			
+			if(marks[city] != stamp) {
+				child[childOffset + k++] = city;
+				remaining--;
+				
+				if(k >= length) k = 0;
+			}
+		}
+	}
+}
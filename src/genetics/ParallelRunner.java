@@ -0,0 +1,136 @@
+package genetics;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs work over chunks of a population on a fork-join pool
+ * Chunk boundaries only depend on the population size, and each chunk has its own Random, so
+ * nothing random is shared between threads
+ * 
+ * @author Alex
+ */
+public class ParallelRunner {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Chunks per thread. More chunks balance uneven work better but cost more overhead
+	public static final int CHUNKS_PER_THREAD = 4;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	/**
+	 * Work done on one chunk
+	 */
+	public interface ChunkBody {
+		/**
+		 * @param chunk index of the chunk, for looking up per chunk state
+		 * @param start first index, inclusive
+		 * @param end last index, exclusive
+		 */
+		void run(int chunk, int start, int end);
+	}
+	
+	final ForkJoinPool pool;
+	
+	final int threads,
+			  numChunks;
+	
+	final Random[] randoms;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param threads number of threads
+	 * @param seeds used to seed the random of each chunk
+	 */
+	public ParallelRunner(int threads, Random seeds) {
+		this.threads = threads;
+		this.numChunks = threads * CHUNKS_PER_THREAD;
+		this.pool = new ForkJoinPool(threads);
+		
+		randoms = new Random[numChunks];
+		for(int i = 0; i < numChunks; i++) {
+			randoms[i] = new Random(seeds.nextLong());
+		}
+	}
+	
+	/**
+	 * Runs body over every chunk of [0, n) and waits for them all to finish
+	 * 
+	 * @param n number of items
+	 * @param body
+	 */
+	public void forEachChunk(int n, ChunkBody body) {
+		pool.invoke(new ChunkTask(body, n, (n + numChunks - 1) / numChunks, 0, numChunks));
+	}
+	
+	/**
+	 * @param chunk
+	 * @return the random belonging to a chunk
+	 */
+	public Random random(int chunk) {
+		return randoms[chunk];
+	}
+	
+	/**
+	 * @return number of chunks work is split into
+	 */
+	public int getNumChunks() {
+		return numChunks;
+	}
+	
+	/**
+	 * @return number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * Stops the pool's threads
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+	
+	/**
+	 * Splits a range of chunks in half until there's one left
+	 */
+	@SuppressWarnings("serial")
+	static class ChunkTask extends RecursiveAction {
+		
+		final ChunkBody body;
+		
+		final int n, chunkSize, lo, hi;
+		
+		ChunkTask(ChunkBody body, int n, int chunkSize, int lo, int hi) {
+			this.body = body;
+			this.n = n;
+			this.chunkSize = chunkSize;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected void compute() {
+			if(hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new ChunkTask(body, n, chunkSize, lo, mid),
+						  new ChunkTask(body, n, chunkSize, mid, hi));
+			} else {
+				int start = lo * chunkSize,
+					end = Math.min(n, start + chunkSize);
+				
+				if(start < end) body.run(lo, start, end);
+			}
+		}
+	}
+}
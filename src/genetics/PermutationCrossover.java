@@ -0,0 +1,77 @@
+package genetics;
+
+import java.util.Random;
+
+/**
+ * OX1 ordered crossover for tours, see OrderCrossover
+ * Child i is crossed from parents i and i - 1 of the selection. Elites are copied unchanged,
+ * except that each one after the best is crossed instead with a given probability.
+ * 
+ * @author Alex
+ */
+public class PermutationCrossover implements GeneticEngine.Crossover<TourPopulation> {
+	
+	final double eliteProbability;
+	
+	// a kernel per chunk, they keep scratch between children
+	OrderCrossover[] kernels = new OrderCrossover[0];
+	
+	/**
+	 * constructor
+	 * 
+	 * @param eliteProbability probability an elite is crossed instead of copied
+	 */
+	public PermutationCrossover(double eliteProbability) {
+		this.eliteProbability = eliteProbability;
+	}
+	
+	@Override
+	public void prepare(GeneticEngine<TourPopulation> engine) {
+		int chunks = engine.getNumChunks(),
+			length = engine.population.length;
+		
+		if(kernels.length != chunks || kernels[0].length != length) {
+			kernels = new OrderCrossover[chunks];
+			
+			for(int i = 0; i < chunks; i++) {
+				kernels[i] = new OrderCrossover(length);
+			}
+		}
+	}
+	
+	@Override
+	public void cross(GeneticEngine<TourPopulation> engine, int start, int end, int chunk, Random r) {
+		// OX1 ordered crossover
+		// Copy a random segment from one, then copy missing items in the order they appear
+		// on the second, starting from the end of the random segment
+		TourPopulation from = engine.population,
+					   to = engine.nextPopulation;
+		int[] selected = engine.selected;
+		int elites = engine.elites,
+			length = from.length;
+		OrderCrossover ox = kernels[chunk];
+		
+		for(int i = start; i < end; i++) {
+			// always breed for normal and sometimes breed for elites
+			if((i >= elites || r.nextDouble() < eliteProbability) && i != 0) {
+				
+				int s = r.nextInt(length),
+					e = r.nextInt(length);
+				
+				if(s > e) {
+					int t = s;
+					s = e;
+					e = t;
+				}
+				
+				ox.cross(from.paths, from.offset(selected[i]), from.paths, from.offset(selected[i - 1]),
+						 to.paths, to.offset(i), s, e);
+				to.rehash(i);
+				to.fitness[i] = 0;
+				to.evaluated[i] = false;
+			} else {
+				to.copy(i, from, selected[i]);
+			}
+		}
+	}
+}
@@ -3,10 +3,15 @@ package genetics;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
+import checkpoint.SavableRandom;
+import checkpoint.StateReader;
+import checkpoint.StateWriter;
 import graphics.APBioSimulation;
 
 /**
@@ -14,7 +19,7 @@ import graphics.APBioSimulation;
  * 
  * @author Alex
  */
-public class PointOptimizer extends GeneticsBase {
+public class PointOptimizer extends GeneticEngine<VectorPopulation> implements Migratable<double[]> {
 	
 	/*
 	 * PARAMETERS
@@ -32,6 +37,12 @@ public class PointOptimizer extends GeneticsBase {
 	// Square of the distance a point needs to be within to be considered
 	final double SELECTION_DISTANCE = 100;
 	
+	// With SELECTION, parents are the best of this many individuals picked at random
+	final int TOURNAMENT_SIZE = 8;
+	
+	// Probability a point is mutated
+	final double MUTATION_PROBABILITY = 0.1;
+	
 	// Mutations add a value taken from a bell curve with this standard deviation, divided by the
 	// number of elapsed generations divided by the diminishing factor
 	final double MUTATION_STD_DEVIATION = 3;
@@ -42,30 +53,36 @@ public class PointOptimizer extends GeneticsBase {
 	// Controls whether mutations have reduced standard deviation over time
 	final boolean DIMINISHING_MUTATIONS = true;
 	
+	// Cells of the grid used to find mates are the selection radius divided by this
+	final double GRID_CELLS_PER_RADIUS = 3;
+	
+	// If true, and src-vector is compiled in and the JVM has the Vector API, fitness is evaluated
+	// several individuals at a time with SIMD instructions. Both give exactly the same fitness
+	final boolean VECTOR_FITNESS = true;
+	
 	/*
 	 * CODE
 	 * Change at your own risk
 	 */
 	
-	double[][] points,
-			   selectedPoints;
-	
-	double[] fitness;
-	
 	double minFitness, maxFitness;
 	
 	int[] xs, ys;
 	
-	int width, height, numGenerations;
+	int width, height;
+	
+	// fitness heatmap shared by the snapshots
+	final HeatmapCache heatmap = new HeatmapCache();
 	
-	Random rand = new Random();
+	// grid over where each point was at the start of cross(), for finding mates
+	UniformGrid grid;
 	
 	/**
 	 * constructor
 	 * 
 	 * @param numPoints Number of points per generation
-	 * @param xLow X position of the lower point of the line
-	 * @param xHigh X position of the upper point of the line
+	 * @param xs X position of each target point
+	 * @param ys Y position of each target point
 	 */
 	public PointOptimizer(int numPoints, int[] xs, int[] ys) {
 		this.xs = xs;
@@ -77,42 +94,60 @@ public class PointOptimizer extends GeneticsBase {
 		width = APBioSimulation.WIDTH;
 		height = APBioSimulation.HEIGHT;
 		
-		points = new double[numPoints][2];
-		initPopulation();
+		if(SELECTION) {
+			// select parents by placing them in adjacent pairs, best of 8 at random
+			selection = new TournamentSelection(TOURNAMENT_SIZE);
+			crossover = new NearbyCrossover();
+		} else {
+			// no selection, every point picks its own mate
+			crossover = new GridCrossover();
+		}
 		
-		selectedPoints = new double[numPoints / 2][2];
-		fitness = new double[numPoints];
+		mutation = new GaussianMutation(MUTATION_PROBABILITY, MUTATION_STD_DEVIATION, DIMINISHING_MUTATIONS ? DIMINISHING_FACTOR : 0);
+		evaluator = this::fitnessRange;
 		
-		numGenerations = 0;
+		setPopulation(newPopulation(numPoints), newPopulation(numPoints));
+		initPopulation();
+	}
+	
+	/**
+	 * @param size
+	 * @return an empty population of points on the canvas
+	 */
+	VectorPopulation newPopulation(int size) {
+		return new VectorPopulation(size, new double[] {0, 0}, new double[] {width, height}, false);
 	}
 	
 	@Override
 	public void initPopulation() {
-		for(int i = 0; i < points.length; i++) {
-			points[i][0] = (float) (rand.nextFloat() * width);
-			points[i][1] = (float) (rand.nextFloat() * height);
-		}
+		super.initPopulation();
 		
 		// find min/max possible fitness
-		minFitness = fitness(0, 0);
-		maxFitness = minFitness;
-		for(int x = 0; x < width; x++) {
-			for(int y = 0; y < height; y++) {
-				double f = fitness(x, y);
-				
-				if(f > maxFitness) maxFitness = f;
-				else if(f < minFitness) minFitness = f;
+		double[] bounds = FitnessBounds.scan("point " + MAX_FITNESS, width, height, (x, y) -> fitness(x, y), xs, ys);
+		minFitness = bounds[0];
+		maxFitness = bounds[1];
+	}
+	
+	/**
+	 * Generates fitness for a range of points
+	 * 
+	 * @param pop
+	 * @param start first index, inclusive
+	 * @param end last index, exclusive
+	 */
+	void fitnessRange(VectorPopulation pop, int start, int end) {
+		double[] px = pop.genes[0],
+				 py = pop.genes[1];
+		
+		if(VECTOR_FITNESS) {
+			fitness(px, py, start, end, xs, ys, MAX_FITNESS, pop.fitness);
+		} else {
+			for(int i = start; i < end; i++) {
+				pop.fitness[i] = fitness(px[i], py[i]);
 			}
 		}
 		
-		numGenerations = 0;
-	}
-
-	@Override
-	public void generateFitness() {
-		for(int i = 0; i < points.length; i++) {
-			fitness[i] = fitness(points[i][0], points[i][1]);
-		}
+		Arrays.fill(pop.evaluated, start, end, true);
 	}
 	
 	/**
@@ -122,189 +157,335 @@ public class PointOptimizer extends GeneticsBase {
 	 * @param y
 	 */
 	public double fitness(double x, double y) {
+		return fitness(x, y, xs, ys, MAX_FITNESS);
+	}
+	
+	/**
+	 * Determines the fitness of a position for a given set of target points
+	 * 
+	 * @param x
+	 * @param y
+	 * @param xs x of each target
+	 * @param ys y of each target
+	 * @param maxFitness most fitness a single target can give
+	 */
+	public static double fitness(double x, double y, int[] xs, int[] ys, double maxFitness) {
 		double fitness = 0,
 			   ax = 0,
 			   ay = 0;
-			
+		
 		// fitness is the sum of distances to points
 		for(int j = 0; j < xs.length; j++) {
 			ax = xs[j];
 			ay = ys[j];
 			
 			// 
-			double d = Math.sqrt(((ax - x) * (ax - x)) + ((ay - y) * (ay - y)));
-			fitness += Math.min(MAX_FITNESS, 1000 / Math.sqrt(d));
+			double d = Math.sqrt(((ax - x) * (ax - x)) + ((ay - y) * (ay - y))),
+				   v = 1000 / Math.sqrt(d);
+			fitness += Math.min(v, maxFitness);
 		}
 		
 		return fitness;
 	}
-
-	@Override
-	public void select() {
-		if(SELECTION) {
-			// select parents by placing them in adjacent pairs
-			// we'll use 4 way tournament selection here
-			for(int i = 0; i < selectedPoints.length; i++) {
-				ArrayList<Double> fitnesses = new ArrayList<>(); // for collections
-				ArrayList<Integer> indicies = new ArrayList<>(); // we need to know where they come from
-				
-				// grab 8 at random
-				for(int j = 0; j < 8; j++) {
-					int ind = rand.nextInt(fitness.length);
-					fitnesses.add(fitness[ind]);
-					indicies.add(ind);
-				}
-				
-				// take the best
-				int ind = indicies.get(fitnesses.indexOf(Collections.max(fitnesses)));
-				selectedPoints[i][0] = points[ind][0];
-				selectedPoints[i][1] = points[ind][1];
-			}
+	
+	/**
+	 * Determines the fitness of a range of positions, exactly the same as fitness(x, y) on each
+	 * With the Vector API when it's there, otherwise one position at a time
+	 * 
+	 * @param px x of each position
+	 * @param py y of each position
+	 * @param start first position, inclusive
+	 * @param end last position, exclusive
+	 * @param xs x of each target
+	 * @param ys y of each target
+	 * @param maxFitness most fitness a single target can give
+	 * @param out fitness of each position
+	 */
+	public static void fitness(double[] px, double[] py, int start, int end, int[] xs, int[] ys, double maxFitness, double[] out) {
+		VectorKernels kernels = VectorKernels.INSTANCE;
+		
+		if(kernels != null) {
+			kernels.point(px, py, start, end, xs, ys, maxFitness, out);
+			return;
+		}
+		
+		for(int i = start; i < end; i++) {
+			out[i] = fitness(px[i], py[i], xs, ys, maxFitness);
 		}
 	}
-
-	@Override
-	public void cross() {
-		if(SELECTION) {
-			// replace half the points with crossed children
-			//int side = (int) Math.round(rand.nextDouble()) * selectedPoints.length;
+	
+	/**
+	 * Crosses each selected parent with another selected parent near it, found by trying a few at
+	 * random
+	 */
+	class NearbyCrossover implements GeneticEngine.Crossover<VectorPopulation> {
+		
+		@Override
+		public int parents(int size) {
+			return size / 2;
+		}
+		
+		@Override
+		public void cross(GeneticEngine<VectorPopulation> engine, int start, int end, int chunk, Random r) {
+			VectorPopulation from = engine.population,
+							 to = engine.nextPopulation;
+			double[] px = from.genes[0],
+					 py = from.genes[1];
+			int[] selected = engine.selected;
+			int parents = parents(from.size);
 			
-			for(int i = 0; i < selectedPoints.length; i++) {
-				for(int j = 0; j < 2; j++) {
-					// select other parent
-					// try random others until one within range is found or too many tries attempted
-					int other = 0;
+			// each parent has 2 children
+			for(int c = start; c < end; c++) {
+				int a = selected[Math.min(c / 2, parents - 1)],
+					other = 0;
+				
+				// select other parent
+				// try random others until one within range is found or too many tries attempted
+				for(int n = 0; n < 16; n++) {
+					other = selected[r.nextInt(parents)];
+					double dx = px[a] - px[other],
+						   dy = py[a] - py[other];
 					
-					for(int n = 0; n < 16; n++) {
-						other = rand.nextInt(selectedPoints.length);
-						double a = selectedPoints[i][0] - selectedPoints[other][0],
-							   b = selectedPoints[i][1] - selectedPoints[other][1];
-						
-						if((a * a) + (b * b) < 100) break;
-					}
+					if((dx * dx) + (dy * dy) < SELECTION_DISTANCE) break;
+				}
+				
+				// loop over genes
+				for(int d = 0; d < from.dimensions; d++) {
+					double[] src = from.genes[d];
 					
-					// loop over genes
-					for(int k = 0; k < 2; k++) {
-						// average cross
-						// offspring are 75/25 for one and 75/25 for the other
-						if(rand.nextFloat() > 0.3) {
-							points[(2 * i) + j][k] = selectedPoints[i][k];
-						} else {
-							points[(2 * i) + j][k] = (selectedPoints[i][k] * 0.75) + (selectedPoints[other][k] * 0.25);
-						}
+					// average cross
+					// offspring are 75/25 for one and 75/25 for the other
+					if(r.nextFloat() > 0.3) {
+						to.genes[d][c] = src[a];
+					} else {
+						to.genes[d][c] = (src[a] * 0.75) + (src[other] * 0.25);
 					}
 				}
+				
+				to.evaluated[c] = false;
 			}
 		}
+	}
+	
+	/**
+	 * Every individual finds the fittest individual near it and crosses with it, using a grid over
+	 * where everyone was at the start of the generation
+	 */
+	class GridCrossover implements GeneticEngine.Crossover<VectorPopulation> {
 		
+		double radius;
 		
-		else {
-			// Every individual tries to find the fittest individual near it
-			for(int i = 0; i < points.length; i++) {
-				// Find best of 8 candidates
-				double[] candidate = new double[2];
-				double cf = 0;
-				for(int j = 0; j < 8; j++) {
-					// Try a few times
-					for(int k = 0; k < 32; k++) {
-						int ind = rand.nextInt(points.length);
-						double a = points[ind][0] - points[i][0],
-							   b = points[ind][1] - points[i][1];
-						
-						// check if in range or out of tries
-						if(((a * a) + (b * b) < SELECTION_DISTANCE || k == 7) && cf < fitness[ind]) {
-							// assign
-							candidate[0] = points[ind][0];
-							candidate[1] = points[ind][1];
-							cf = fitness[ind];
-						}
-					}
+		@Override
+		public void prepare(GeneticEngine<VectorPopulation> engine) {
+			VectorPopulation pop = engine.population;
+			
+			radius = Math.sqrt(SELECTION_DISTANCE);
+			
+			// cells a fraction of the radius across, so queries look at a few cells whatever the
+			// population
+			if(grid == null) grid = new UniformGrid(pop.genes[0], pop.genes[1]);
+			grid.build(pop.genes[0], pop.genes[1], pop.size, radius / GRID_CELLS_PER_RADIUS);
+			grid.indexFitness(pop.fitness);
+		}
+		
+		@Override
+		public void cross(GeneticEngine<VectorPopulation> engine, int start, int end, int chunk, Random r) {
+			VectorPopulation from = engine.population,
+							 to = engine.nextPopulation;
+			double[] px = from.genes[0],
+					 py = from.genes[1],
+					 fitness = from.fitness;
+			
+			// in cell order, so neighbors' queries look at the same cells
+			for(int j = start; j < end; j++) {
+				int i = grid.pointAt(j),
+					ind = grid.fittestWithinRadius(px[i], py[i], radius);
+				
+				// nothing fitter nearby, so try someone anywhere like the random search used to
+				if(ind == i) {
+					int other = r.nextInt(from.size);
+					if(fitness[other] > fitness[i]) ind = other;
 				}
 				
 				// cross with found individual
 				// loop over genes
-				for(int k = 0; k < 2; k++) {
+				for(int d = 0; d < from.dimensions; d++) {
+					double[] src = from.genes[d];
+					
 					// average cross
 					// offspring are 75/25 for one and 75/25 for the other
-					if(rand.nextFloat() > 0.7) {
-						points[i][k] = points[i][k];
+					if(r.nextFloat() > 0.7) {
+						to.genes[d][i] = src[i];
 					} else {
-						points[i][k] = (candidate[k] * 0.75) + (candidate[k] * 0.25);
+						to.genes[d][i] = (src[ind] * 0.75) + (src[ind] * 0.25);
 					}
 				}
+				
+				to.evaluated[i] = false;
 			}
 		}
 	}
 	
+	/**
+	 * Root mean square distance of the points from their center
+	 */
 	@Override
-	public void mutate() {
-		// if we mutate, add a value in [-5, 5]
-		for(int i = 0; i < points.length; i++) {
-			/*
-			for(int j = 0; j < 2; j++) {
-				if(rand.nextFloat() > 0.9) {
-					points[i][j] += rand.nextGaussian() * 10;
-				}
-			}
-			*/
-			
-			if(rand.nextFloat() > 0.9) {
-				if(DIMINISHING_MUTATIONS) {
-					// let's try reducing learning rate over time
-					points[i][0] += rand.nextGaussian() * MUTATION_STD_DEVIATION / Math.max(1, (double)(numGenerations) / DIMINISHING_FACTOR);
-					points[i][1] += rand.nextGaussian() * MUTATION_STD_DEVIATION / Math.max(1, (double)(numGenerations) / DIMINISHING_FACTOR);
-				} else {
-					// let's try reducing learning rate over time
-					points[i][0] += rand.nextGaussian() * MUTATION_STD_DEVIATION;
-					points[i][1] += rand.nextGaussian() * MUTATION_STD_DEVIATION;
-				}
-			}
+	public double getDiversity() {
+		return population.spread();
+	}
+	
+	@Override
+	public List<double[]> emigrants(int count) {
+		generateFitness();
+		
+		List<double[]> out = new ArrayList<>(count);
+		for(int i : best(count)) {
+			out.add(population.getVector(i));
 		}
 		
-		// cleanup - make sure we stay in bounds
-		for(int i = 0; i < points.length; i++) {
-			if(points[i][0] < 0) points[i][0] = 0;
-			if(points[i][0] > width) points[i][0] = width;
+		return out;
+	}
+	
+	@Override
+	public void immigrate(List<double[]> migrants) {
+		generateFitness();
+		
+		for(double[] p : migrants) {
+			// replace the worst
+			int worst = population.worst();
 			
-			if(points[i][1] < 0) points[i][1] = 0;
-			if(points[i][1] > height) points[i][1] = height;
+			population.setVector(worst, p);
+			population.clamp(worst);
+			fitnessRange(population, worst, worst + 1);
 		}
+	}
+	
+	@Override
+	public double fitness(double[] individual) {
+		return fitness(individual[0], individual[1]);
+	}
+	
+	@Override
+	public boolean minimizesFitness() {
+		return false;
+	}
+	
+	@Override
+	public void writeState(StateWriter out) {
+		out.putInt(width);
+		out.putInt(height);
+		out.putInt(numGenerations);
+		out.putInts(xs);
+		out.putInts(ys);
+		out.putDouble(minFitness);
+		out.putDouble(maxFitness);
 		
-		numGenerations++;
+		// points as x, y pairs
+		out.putDoubles(population.interleaved());
+		out.putRandom(rand);
 	}
-
+	
 	@Override
-	public void draw(Graphics2D g) {
-		g.setStroke(new BasicStroke(2f));
+	public void readState(StateReader in) throws IOException {
+		int w = in.getInt(),
+			h = in.getInt(),
+			gens = in.getInt();
+		int[] targetXs = in.getInts(),
+			  targetYs = in.getInts();
+		double min = in.getDouble(),
+			   max = in.getDouble();
+		double[] flat = in.getDoubles();
+		SavableRandom r = in.getRandom();
 		
-		// draw heatmap of fitness in red
-		for(int x = 0; x < width; x++) {
-			for(int y = 0; y < height; y++) {
-				double fitness = fitness(x, y);
-				
-				double v = ((fitness - minFitness) / (maxFitness - minFitness));
-				int col = Math.max(0, Math.min(255, (int) (255 * (1 - (v * 1.5)))));
-				//if(x == 50) System.out.println(fitness + ": " + col);
-				
-				g.setColor(new Color(255, col, col));
-				g.drawRect(x, y, 1, 1);
-			}
-		}
+		if(targetXs == null || targetYs == null || targetXs.length != targetYs.length || flat == null || flat.length % 2 != 0 || flat.length == 0) throw new IOException("bad point optimizer state");
 		
-		// target points
-		/*
-		g.setColor(Color.blue);
-		for(int i = 0; i < xs.length; i++) {
-			g.fillRect(xs[i] - 5, ys[i] - 5, 10, 10);
-		}
-		*/
+		width = w;
+		height = h;
+		xs = targetXs;
+		ys = targetYs;
+		minFitness = min;
+		maxFitness = max;
+		
+		int n = flat.length / 2;
+		setPopulation(newPopulation(n), newPopulation(n));
+		population.setInterleaved(flat);
+		numGenerations = gens;
 		
-		// draw points
-		g.setColor(Color.black);
-		for(int i = 0; i < points.length; i++) {
-			g.fillRect((int) points[i][0] - 2, (int) points[i][1] - 2, 4, 4);
+		rand = r;
+		
+		// chunk randoms come from rand
+		setThreads(getThreads());
+		generateFitness();
+	}
+	
+	@Override
+	public RenderSnapshot snapshot(RenderSnapshot reuse) {
+		Snapshot s = reuse instanceof Snapshot ? (Snapshot) reuse : new Snapshot();
+		
+		s.width = width;
+		s.height = height;
+		s.minFitness = minFitness;
+		s.maxFitness = maxFitness;
+		s.cap = MAX_FITNESS;
+		s.xs = RenderSnapshot.fit(s.xs, xs.length);
+		s.ys = RenderSnapshot.fit(s.ys, ys.length);
+		System.arraycopy(xs, 0, s.xs, 0, xs.length);
+		System.arraycopy(ys, 0, s.ys, 0, ys.length);
+		
+		s.heatmap = heatmap;
+		double[] px = population.genes[0],
+				 py = population.genes[1];
+		
+		s.points = RenderSnapshot.fit(s.points, population.size * 2);
+		for(int i = 0; i < population.size; i++) {
+			s.points[2*i] = px[i];
+			s.points[2*i + 1] = py[i];
 		}
 		
-		System.out.println("frame drawn");
+		return s;
+	}
+	
+	/**
+	 * What a PointOptimizer draws
+	 */
+	static class Snapshot extends RenderSnapshot {
+		
+		int width, height;
+		
+		double minFitness, maxFitness, cap;
+		
+		int[] xs, ys;
+		
+		// x, y pairs
+		double[] points;
+		
+		HeatmapCache heatmap;
+		
+		@Override
+		public void draw(Graphics2D g) {
+			g.setStroke(new BasicStroke(2f));
+			
+			// heatmap of fitness in red, only drawn again when the targets change
+			g.drawImage(heatmap.get(width, height, (x, y) -> {
+				double v = ((fitness(x, y, xs, ys, cap) - minFitness) / (maxFitness - minFitness));
+				int col = (int) (255 * (1 - (v * 1.5)));
+				
+				return HeatmapCache.red(col);
+			}, xs, ys), 0, 0, null);
+			
+			// target points
+			/*
+			g.setColor(Color.blue);
+			for(int i = 0; i < xs.length; i++) {
+				g.fillRect(xs[i] - 5, ys[i] - 5, 10, 10);
+			}
+			*/
+			
+			// draw points
+			g.setColor(Color.black);
+			for(int i = 0; i < points.length; i += 2) {
+				g.fillRect((int) points[i] - 2, (int) points[i + 1] - 2, 4, 4);
+			}
+		}
 	}
 }
@@ -0,0 +1,218 @@
+package genetics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A population of individuals in one encoding, and the fitness of each
+ * Subclasses keep the genes of the whole population in a few flat arrays instead of an object per
+ * individual, so the engine can copy, sort and evaluate them without chasing references.
+ * 
+ * @author Alex
+ */
+public abstract class Population {
+	
+	final int size;
+	
+	final double[] fitness;
+	
+	// true if fitness matches the genes
+	final boolean[] evaluated;
+	
+	// 1 if lower fitness is better, -1 if higher is, so sorting always puts the best first
+	final double sign;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param size number of individuals
+	 * @param minimize true if lower fitness is better
+	 */
+	public Population(int size, boolean minimize) {
+		this.size = size;
+		this.sign = minimize ? 1 : -1;
+		
+		fitness = new double[size];
+		evaluated = new boolean[size];
+	}
+	
+	/**
+	 * Replaces an individual with a random one
+	 * 
+	 * @param i index of the individual
+	 * @param r
+	 */
+	public abstract void randomize(int i, Random r);
+	
+	/**
+	 * Copies the genes of an individual from another population of the same encoding and size
+	 * 
+	 * @param to index to copy into
+	 * @param from population to copy from
+	 * @param fromIndex index to copy from
+	 */
+	protected abstract void copyGenes(int to, Population from, int fromIndex);
+	
+	/**
+	 * Copies an individual and its fitness from another population
+	 * 
+	 * @param to index to copy into
+	 * @param from population to copy from
+	 * @param fromIndex index to copy from
+	 */
+	public void copy(int to, Population from, int fromIndex) {
+		copyGenes(to, from, fromIndex);
+		fitness[to] = from.fitness[fromIndex];
+		evaluated[to] = from.evaluated[fromIndex];
+	}
+	
+	/**
+	 * @param a
+	 * @param b
+	 * @return true if fitness a is better than fitness b
+	 */
+	public boolean isBetter(double a, double b) {
+		return sign * a < sign * b;
+	}
+	
+	/**
+	 * @return index of the best individual
+	 */
+	public int best() {
+		int best = 0;
+		
+		for(int i = 1; i < size; i++) {
+			if(sign * fitness[i] < sign * fitness[best]) best = i;
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * @return index of the worst individual
+	 */
+	public int worst() {
+		int worst = 0;
+		
+		for(int i = 1; i < size; i++) {
+			if(sign * fitness[i] > sign * fitness[worst]) worst = i;
+		}
+		
+		return worst;
+	}
+	
+	/**
+	 * Sorts part of an array of indices from best to worst
+	 * 
+	 * @param order indices of individuals
+	 * @param from first index to sort, inclusive
+	 * @param to last index to sort, exclusive
+	 */
+	public void sortByFitness(int[] order, int from, int to) {
+		// quicksort, finishing small ranges with insertion sort
+		while(to - from > 16) {
+			double pivot = sign * fitness[order[(from + to) >>> 1]];
+			int i = from,
+				j = to - 1;
+			
+			while(i <= j) {
+				while(sign * fitness[order[i]] < pivot) i++;
+				while(sign * fitness[order[j]] > pivot) j--;
+				
+				if(i <= j) {
+					int t = order[i];
+					order[i++] = order[j];
+					order[j--] = t;
+				}
+			}
+			
+			// recurse on the smaller side so the stack stays shallow
+			if(j - from < to - i) {
+				sortByFitness(order, from, j + 1);
+				from = i;
+			} else {
+				sortByFitness(order, i, to);
+				to = j + 1;
+			}
+		}
+		
+		for(int i = from + 1; i < to; i++) {
+			int v = order[i];
+			double f = sign * fitness[v];
+			int j = i - 1;
+			
+			while(j >= from && sign * fitness[order[j]] > f) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			
+			order[j + 1] = v;
+		}
+	}
+	
+	/**
+	 * Rearranges part of an array of indices so the best k come first, in no particular order
+	 * Expected O(n), unlike a full sort
+	 * 
+	 * @param order indices of individuals
+	 * @param from first index, inclusive
+	 * @param to last index, exclusive
+	 * @param k number of best individuals to move to the front
+	 */
+	public void selectBest(int[] order, int from, int to, int k) {
+		int target = from + k;
+		
+		// quickselect, only continuing into the side holding the boundary
+		while(to - from > 16) {
+			double pivot = sign * fitness[order[(from + to) >>> 1]];
+			int i = from,
+				j = to - 1;
+			
+			while(i <= j) {
+				while(sign * fitness[order[i]] < pivot) i++;
+				while(sign * fitness[order[j]] > pivot) j--;
+				
+				if(i <= j) {
+					int t = order[i];
+					order[i++] = order[j];
+					order[j--] = t;
+				}
+			}
+			
+			if(target <= j + 1) to = j + 1;
+			else if(target >= i) from = i;
+			else return; // the boundary is among individuals equal to the pivot
+		}
+		
+		sortByFitness(order, from, to);
+	}
+	
+	/**
+	 * Marks every individual as needing a full evaluation
+	 */
+	public void invalidate() {
+		Arrays.fill(evaluated, false);
+	}
+	
+	/**
+	 * @param i
+	 * @return fitness of individual i
+	 */
+	public double getFitness(int i) {
+		return fitness[i];
+	}
+	
+	/**
+	 * @return true if lower fitness is better
+	 */
+	public boolean minimizes() {
+		return sign > 0;
+	}
+	
+	/**
+	 * @return number of individuals
+	 */
+	public int size() {
+		return size;
+	}
+}
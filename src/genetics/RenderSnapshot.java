@@ -0,0 +1,43 @@
+package genetics;
+
+import java.awt.Graphics2D;
+
+/**
+ * A copy of what a simulation draws, taken between generations
+ * Snapshots are drawn on another thread while the simulation keeps running, so a snapshot never
+ * points at arrays the simulation changes. They're reused, see SnapshotExchange.
+ * 
+ * @author Alex
+ */
+public abstract class RenderSnapshot {
+	
+	// generation count when taken, set by SnapshotExchange
+	long sequence = -1;
+	
+	/**
+	 * Draws the snapshot
+	 * 
+	 * @param g
+	 */
+	public abstract void draw(Graphics2D g);
+	
+	/**
+	 * @return order the snapshot was published in, -1 if it never was
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
+	/**
+	 * @param a
+	 * @param length
+	 * @return a if it can hold length values, or a new array that can
+	 */
+	static int[] fit(int[] a, int length) {
+		return a != null && a.length == length ? a : new int[length];
+	}
+	
+	static double[] fit(double[] a, int length) {
+		return a != null && a.length == length ? a : new double[length];
+	}
+}
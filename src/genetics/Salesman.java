@@ -3,16 +3,21 @@ package genetics;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
+import checkpoint.SavableRandom;
+import checkpoint.StateReader;
+import checkpoint.StateWriter;
 import graphics.APBioSimulation;
 
 /**
  * tries to solve the traveling salesman problem
  */
-public class Salesman extends GeneticsBase {
+public class Salesman extends GeneticEngine<TourPopulation> implements Migratable<int[]> {
 	
 	/*
 	 * PARAMETERS
@@ -28,18 +33,56 @@ public class Salesman extends GeneticsBase {
 	// Mutations swap a number of cities based on the absolute value of a gaussian distribution with said SD
 	final double MUTATION_SD_FACTOR = 0.25;
 	
+	// Mutation keeps fitness up to date by adding and removing edges, which slowly drifts. Every
+	// this many generations every solution is walked again from scratch
+	final int FULL_EVALUATION_INTERVAL = 1000;
+	
+	// With truncation selection, parents are picked from this fraction of the population
+	final double TRUNCATION_FRACTION = 0.25;
+	
+	// Number of nearest neighbors local search tries moves towards
+	final int LOCAL_SEARCH_NEIGHBORS = 8;
+	
+	// Tours are looked up by hash before being walked, in a cache of 2^this entries. 0 turns it off
+	final int FITNESS_CACHE_BITS = 16;
+	
+	// Whether tours that are the same as one before them get a few random swaps at the end of each
+	// generation, so a converged population keeps exploring
+	final boolean REPLACE_DUPLICATES = false;
+	
+	// Number of random swaps given to each duplicate
+	final int DUPLICATE_SWAPS = 3;
+	
+	// Whether to start in steady state mode, where a few children at a time replace the worst tours
+	// instead of a whole new generation being made
+	final boolean STEADY_STATE = false;
+	
+	// Number of children bred by each step in steady state mode
+	final int STEADY_STATE_OFFSPRING = 2;
+	
 	
 	/*
 	 * CODE
 	 * Change at your own risk
 	 */
 	
-	int[][] cities;
+	TspInstance instance;
+	
+	// true if reset scatters new cities, false if the cities were given
+	boolean randomCities;
+	
+	// true if tours return to the first city
+	boolean closed;
+	
+	DistanceProvider distances;
+	
+	DistanceProvider.Mode distanceMode = DistanceProvider.Mode.AUTO;
+	
+	// spatial index over the cities for neighbor queries
+	UniformGrid cityGrid;
 	
 	int numSolutions,
 		numCities,
-		elites,
-		numGenerations,
 		gensSinceImprovement,
 		totalGensSinceImprovement,
 		newBests;
@@ -48,10 +91,45 @@ public class Salesman extends GeneticsBase {
 		   mutProb,
 		   bestFitness;
 	
-	ArrayList<SalesmanSolution> solutions,
-								selectedSolutions;
+	// maps city coordinates onto the canvas
+	double drawScale,
+		   drawX,
+		   drawY;
+	
+	SelectionScheme selectionScheme = SelectionScheme.TOURNAMENT;
+	
+	int tournamentSize = 8;
+	
+	// local search between crossing and mutating, null when turned off
+	NeighborLists neighborLists;
+	
+	// fitness of tours seen before, null when turned off
+	final FitnessCache fitnessCache = FITNESS_CACHE_BITS > 0 ? new FitnessCache(FITNESS_CACHE_BITS) : null;
+	
+	boolean replaceDuplicates = REPLACE_DUPLICATES;
+	
+	// scratch for finding duplicates, hashes by open addressing
+	long[] seenHashes = new long[0];
+	
+	boolean steadyState = STEADY_STATE;
+	
+	// worst and best tours of the population, only valid while heapsReady
+	final IndexedHeap worstHeap = new IndexedHeap(true),
+					  bestHeap = new IndexedHeap(false);
+	
+	// false when the population changed some way other than step(), like a whole generation
+	boolean heapsReady;
+	
+	// children bred by step() before they replace anything, and the crossover making them
+	TourPopulation offspring;
+	
+	OrderCrossover steadyCrossover;
 	
-	Random rand = new Random();
+	// parents of each child
+	int[] steadyParents;
+	
+	// children bred towards the next generation counted in steady state mode
+	int offspringBred;
 	
 	/**
 	 * Constructor
@@ -63,9 +141,35 @@ public class Salesman extends GeneticsBase {
 	 * @param mutProb probability of mutation
 	 */
 	public Salesman(int numCities, int numSolutions, int elites, double eliteProb, double mutProb) {
-		cities = new int[numCities][2];
-		solutions = new ArrayList<>(numSolutions);
-		selectedSolutions = new ArrayList<>(numSolutions);
+		this(null, numCities, numSolutions, elites, eliteProb, mutProb);
+	}
+	
+	/**
+	 * Constructor for a given set of cities, such as a TSPLIB instance
+	 * 
+	 * @param instance cities to visit
+	 * @param numSolutions number of solutions
+	 * @param elites number of elites
+	 * @param eliteProb probability of elite cross
+	 * @param mutProb probability of mutation
+	 */
+	public Salesman(TspInstance instance, int numSolutions, int elites, double eliteProb, double mutProb) {
+		this(instance, instance.getDimension(), numSolutions, elites, eliteProb, mutProb);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param instance cities to visit, or null for random ones
+	 * @param numCities number of cities
+	 * @param numSolutions number of solutions
+	 * @param elites number of elites
+	 * @param eliteProb probability of elite cross
+	 * @param mutProb probability of mutation
+	 */
+	Salesman(TspInstance instance, int numCities, int numSolutions, int elites, double eliteProb, double mutProb) {
+		this.instance = instance;
+		this.randomCities = instance == null;
 		
 		this.numCities = numCities;
 		this.numSolutions = numSolutions;
@@ -73,6 +177,9 @@ public class Salesman extends GeneticsBase {
 		this.eliteProb = eliteProb;
 		this.mutProb = mutProb;
 		
+		setPopulation(new TourPopulation(numSolutions, numCities), new TourPopulation(numSolutions, numCities));
+		setupOperators();
+		
 		reset();
 	}
 	
@@ -82,59 +189,220 @@ public class Salesman extends GeneticsBase {
 		gensSinceImprovement = 0;
 		totalGensSinceImprovement = 0;
 		newBests = 0;
-		bestFitness = 100000;
+		bestFitness = Double.MAX_VALUE;
+		offspringBred = 0;
+		heapsReady = false;
+		
+		if(randomCities) generateCities();
+		else useInstance(instance);
 		
-		generateCities();
 		initPopulation();
-		generateFitness();
+	}
+	
+	/**
+	 * Plugs this problem's operators into the engine
+	 */
+	void setupOperators() {
+		crossover = new PermutationCrossover(eliteProb);
+		mutation = (e, s, end, c, r) -> mutateRange(population, s, end, r);
+		evaluator = this::fitnessRange;
+		fullEvaluationInterval = FULL_EVALUATION_INTERVAL;
+		
+		setSelectionScheme(selectionScheme);
 	}
 	
 	public void generateCities() {
 		// Generate cities
-		for(int i = 0; i < cities.length; i++) {
-			cities[i][0] = rand.nextInt(APBioSimulation.WIDTH);
-			cities[i][1] = rand.nextInt(APBioSimulation.HEIGHT);
-		}
+		useInstance(TspInstance.random(numCities, APBioSimulation.WIDTH, APBioSimulation.HEIGHT, rand));
 	}
-
-	@Override
-	public void initPopulation() {
-		generateCities();
+	
+	/**
+	 * Switches to a set of cities with the same number of cities
+	 * 
+	 * @param inst
+	 */
+	void useInstance(TspInstance inst) {
+		instance = inst;
+		closed = inst.isClosed();
+		distances = inst.distances(distanceMode);
 		
-		solutions.clear();
+		population.setClosed(closed);
+		nextPopulation.setClosed(closed);
+		if(fitnessCache != null) fitnessCache.clear();
 		
-		for(int i = 0; i < numSolutions; i++) {
-			solutions.add(new SalesmanSolution(cities.length));
+		// the grid needs coordinates, explicit instances may not have any
+		if(!inst.hasCoordinates()) cityGrid = null;
+		else if(cityGrid == null) cityGrid = new UniformGrid(inst.xs, inst.ys);
+		else cityGrid.build(inst.xs, inst.ys, numCities);
+		
+		setupDrawTransform();
+		
+		if(improvement != null) setupLocalSearch();
+	}
+	
+	/**
+	 * Fits the cities onto the canvas
+	 * Random cities are already in canvas coordinates
+	 */
+	void setupDrawTransform() {
+		drawScale = 1;
+		drawX = 0;
+		drawY = 0;
+		
+		if(randomCities || !distances.hasCoordinates()) return;
+		
+		double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE,
+			   minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		
+		for(int i = 0; i < numCities; i++) {
+			minX = Math.min(minX, distances.x(i));
+			maxX = Math.max(maxX, distances.x(i));
+			minY = Math.min(minY, distances.y(i));
+			maxY = Math.max(maxY, distances.y(i));
 		}
+		
+		// leave a margin so the city squares aren't cut off
+		int margin = 10;
+		drawScale = Math.min((APBioSimulation.WIDTH - (2 * margin)) / Math.max(1e-9, maxX - minX),
+							 (APBioSimulation.HEIGHT - (2 * margin)) / Math.max(1e-9, maxY - minY));
+		drawX = margin - (minX * drawScale);
+		drawY = margin - (minY * drawScale);
+	}
+	
+	/**
+	 * Changes how distances between cities are found
+	 * Explicit instances keep their own distances
+	 * 
+	 * @param mode
+	 */
+	public void setDistanceMode(DistanceProvider.Mode mode) {
+		distanceMode = mode;
+		distances = instance.distances(distanceMode);
+		if(fitnessCache != null) fitnessCache.clear();
+		if(improvement != null) setupLocalSearch();
+	}
+	
+	/**
+	 * @return the cities being visited
+	 */
+	public TspInstance getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * @return the distances between cities
+	 */
+	public DistanceProvider getDistances() {
+		return distances;
+	}
+	
+	/**
+	 * @return spatial index over the cities
+	 */
+	public UniformGrid getCityGrid() {
+		return cityGrid;
 	}
 
-	@Override
-	public void generateFitness() {
+	/**
+	 * Generates fitness for a range of solutions
+	 * 
+	 * @param pop
+	 * @param start first index, inclusive
+	 * @param end last index, exclusive
+	 */
+	void fitnessRange(TourPopulation pop, int start, int end) {
 		// Walk the solution to find the length
-		for(int i = 0; i < solutions.size(); i++) {
-			SalesmanSolution sol = solutions.get(i);
-			int[] path = sol.path;
-			sol.fitness = 0;
-			
-			for(int j = 1; j < numCities; j++) {
-				sol.fitness += dist(cities[path[j]][0], cities[path[j]][1],
-									cities[path[j - 1]][0], cities[path[j - 1]][1]);
+		// solutions that still have a correct fitness are skipped, and ones seen before are looked up
+		for(int i = start; i < end; i++) {
+			if(!pop.evaluated[i]) {
+				double f = fitnessCache == null ? Double.NaN : fitnessCache.get(pop.hashes[i]);
+				
+				if(Double.isNaN(f)) {
+					f = closed ? distances.tourLength(pop.paths, pop.offset(i), numCities)
+							   : distances.pathLength(pop.paths, pop.offset(i), numCities);
+					
+					if(fitnessCache != null) fitnessCache.put(pop.hashes[i], f);
+				}
+				
+				pop.fitness[i] = f;
+				pop.evaluated[i] = true;
 			}
 		}
 	}
 	
-	void parallelGenerateFitness(int start, int end) {
-		// Walk the solution to find the length
-		for(int i = start; i < end; i++) {
-			SalesmanSolution sol = solutions.get(i);
-			int[] path = sol.path;
-			sol.fitness = 0;
+	/**
+	 * Returns how much the length of a path changes if two cities are swapped
+	 * Only the edges touching the swapped cities change
+	 * 
+	 * @param p array holding the path
+	 * @param o index of the first city of the path
+	 * @param a index in the path of the first city to swap
+	 * @param b index in the path of the second city to swap
+	 * @return
+	 */
+	double swapDelta(int[] p, int o, int a, int b) {
+		if(a == b) return 0;
+		
+		if(a > b) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+		
+		// the ends of a closed tour are next to each other, with the last one first
+		if(closed && a == 0 && b == numCities - 1) {
+			a = numCities - 1;
+			b = 0;
+		}
+		
+		int ca = p[o + a],
+			cb = p[o + b],
+			pa = prevIndex(a),
+			nb = nextIndex(b);
+		
+		double before = 0,
+			   after = 0;
+		
+		// edge into the first
+		if(pa >= 0) {
+			before += distances.dist(p[o + pa], ca);
+			after += distances.dist(p[o + pa], cb);
+		}
+		
+		// edge out of the second
+		if(nb >= 0) {
+			before += distances.dist(cb, p[o + nb]);
+			after += distances.dist(ca, p[o + nb]);
+		}
+		
+		// edges between them, adjacent cities share one edge that doesn't change length
+		if(nextIndex(a) != b) {
+			int na = nextIndex(a),
+				pb = prevIndex(b);
 			
-			for(int j = 1; j < numCities; j++) {
-				sol.fitness += dist(cities[path[j]][0], cities[path[j]][1],
-									cities[path[j - 1]][0], cities[path[j - 1]][1]);
-			}
+			before += distances.dist(ca, p[o + na]) + distances.dist(p[o + pb], cb);
+			after += distances.dist(cb, p[o + na]) + distances.dist(p[o + pb], ca);
 		}
+		
+		return after - before;
+	}
+	
+	/**
+	 * @param i
+	 * @return index before i in a tour, or -1 if there isn't one
+	 */
+	int prevIndex(int i) {
+		if(i > 0) return i - 1;
+		return closed ? numCities - 1 : -1;
+	}
+	
+	/**
+	 * @param i
+	 * @return index after i in a tour, or -1 if there isn't one
+	 */
+	int nextIndex(int i) {
+		if(i < numCities - 1) return i + 1;
+		return closed ? 0 : -1;
 	}
 	
 	/**
@@ -150,183 +418,146 @@ public class Salesman extends GeneticsBase {
 		return Math.sqrt(((x1 - x2) * (x1 - x2)) + ((y1 - y2) * (y1 - y2)));
 	}
 
-	@Override
-	public void select() {
-		// elitist tournament selection
-		Collections.sort(solutions);
-		
-		selectedSolutions.clear();
-		
-		// Copy elites
-		for(int i = 0; i < elites; i++) {
-			selectedSolutions.add(solutions.get(i));
-		}
+	/**
+	 * Sets how parents are picked after the elites
+	 * 
+	 * @param scheme
+	 */
+	public void setSelectionScheme(SelectionScheme scheme) {
+		selectionScheme = scheme;
+		selection = scheme == SelectionScheme.TRUNCATION ? new TruncationSelection(TRUNCATION_FRACTION) : new TournamentSelection(tournamentSize);
 		
-		// Tournament selected randos
-		int tournSize = 8;
-		for(int i = elites; i < solutions.size(); i++) {
-			ArrayList<SalesmanSolution> candidates = new ArrayList<>(tournSize);
+		// steady state ranks for the new selection
+		heapsReady = false;
+	}
+	
+	/**
+	 * Sets how many individuals compete in each tournament
+	 * 
+	 * @param size
+	 */
+	public void setTournamentSize(int size) {
+		tournamentSize = Math.max(1, size);
+		setSelectionScheme(selectionScheme);
+	}
+
+	/**
+	 * Improves every solution with 2-opt and Or-opt moves
+	 * Does nothing unless local search is turned on
+	 */
+	public void localSearch() {
+		improve();
+	}
+	
+	/**
+	 * Improves a range of solutions with local search
+	 * 
+	 * @param pop
+	 * @param start first index, inclusive
+	 * @param end last index, exclusive
+	 * @param ls local search to use
+	 */
+	void localSearchRange(TourPopulation pop, int start, int end, LocalSearch ls) {
+		for(int i = start; i < end; i++) {
+			// a search can take milliseconds on big instances, so the deadline is checked for each
+			if(deadlinePassed()) return;
 			
-			for(int j = 0; j < tournSize; j++) {
-				candidates.add(solutions.get(rand.nextInt(solutions.size())));
-			}
+			double gain = ls.improve(pop.paths, pop.offset(i));
+			
+			// moves are only made when they gain, so no gain means no change
+			if(gain > 0) pop.rehash(i);
 			
-			// take the best
-			selectedSolutions.add(Collections.min(candidates));
+			// children from crossing get walked later anyways
+			if(pop.evaluated[i]) pop.fitness[i] -= gain;
 		}
 	}
-
-	@Override
-	public void cross() {
-		ArrayList<SalesmanSolution> newSolutions = new ArrayList<>();
-		
-		// OX1 ordered crossover
-		// Copy a random segment from one, then copy missing items in the order they appear
-		// on the second, starting from the end of the random segment
-		for(int i = 0; i < numSolutions; i++) {
-			
-			// always breed for normal and sometimes breed for elites
-			if((i >= elites || rand.nextDouble() < eliteProb) && i != 0) {
-				int[] p1 = selectedSolutions.get(i).path,
-					  p2 = selectedSolutions.get(i - 1).path;
-				
-				ArrayList<Integer> newPath = new ArrayList<>(numCities);
-				
-				// initialize with -1
-				for(int j = 0; j < numCities; j++) newPath.add(-1);
-				
-				int start = rand.nextInt(numCities),
-					end = rand.nextInt(numCities);
-				
-				if(start > end) {
-					int t = start;
-					start = end;
-					end = t;
-				}
-				
-				// copy from first
-				for(int j = start; j < end; j++) {
-					newPath.set(j, p1[j]);
-				}
-				
-				// copy from second
-				// j is source index k is dest index
-				for(int j = end, k = end; newPath.contains(-1); j++) {
-					if(j >= numCities) j = 0;
-					
-					if(!newPath.contains(p2[j])) {
-						newPath.set(k++, p2[j]);
-						
-						if(k >= numCities) k = 0;
-					}
-				}
-				
-				newSolutions.add(new SalesmanSolution(newPath));
-			} else {
-				newSolutions.add(selectedSolutions.get(i));
-			}
+	
+	/**
+	 * Turns the local search stage on or off
+	 * 
+	 * @param enabled
+	 */
+	public void setLocalSearch(boolean enabled) {
+		if(enabled) {
+			setupLocalSearch();
+		} else {
+			neighborLists = null;
+			improvement = null;
 		}
+	}
+	
+	/**
+	 * Builds neighbor lists from the current cities, and the stage that searches with them
+	 */
+	void setupLocalSearch() {
+		// explicit instances without coordinates have to check every pair
+		if(cityGrid != null) neighborLists = new NeighborLists(cityGrid, LOCAL_SEARCH_NEIGHBORS);
+		else neighborLists = new NeighborLists(distances, LOCAL_SEARCH_NEIGHBORS);
 		
-		solutions = newSolutions;
+		improvement = new LocalSearchStage(distances, neighborLists, closed);
 	}
 	
-	void parallelCross(int start, int end) {
-		ArrayList<SalesmanSolution> newSolutions = new ArrayList<>();
+	/**
+	 * Local search as a stage of the engine, with a search for each chunk
+	 */
+	class LocalSearchStage implements GeneticEngine.Mutation<TourPopulation> {
 		
-		// OX1 ordered crossover
-		// Copy a random segment from one, then copy missing items in the order they appear
-		// on the second, starting from the end of the random segment
-		for(int i = start; i < end; i++) {
+		final DistanceProvider distances;
+		
+		final NeighborLists neighbors;
+		
+		final boolean closed;
+		
+		LocalSearch[] searches = new LocalSearch[0];
+		
+		LocalSearchStage(DistanceProvider distances, NeighborLists neighbors, boolean closed) {
+			this.distances = distances;
+			this.neighbors = neighbors;
+			this.closed = closed;
+		}
+		
+		@Override
+		public void prepare(GeneticEngine<TourPopulation> engine) {
+			if(searches.length == engine.getNumChunks()) return;
 			
-			// always breed for normal and sometimes breed for elites
-			if((i >= elites || rand.nextDouble() < eliteProb) && i != 0) {
-				int[] p1 = selectedSolutions.get(i).path,
-					  p2 = selectedSolutions.get(i - 1).path;
-				
-				ArrayList<Integer> newPath = new ArrayList<>(numCities);
-				
-				// initialize with -1
-				for(int j = 0; j < numCities; j++) newPath.add(-1);
-				
-				int s = rand.nextInt(numCities),
-					e = rand.nextInt(numCities);
-				
-				if(s > e) {
-					int t = s;
-					s = e;
-					e = t;
-				}
-				
-				// copy from first
-				for(int j = s; j < e; j++) {
-					newPath.set(j, p1[j]);
-				}
-				
-				// copy from second
-				// j is source index k is dest index
-				for(int j = e, k = e; newPath.contains(-1); j++) {
-					if(j >= numCities) j = 0;
-					
-					if(!newPath.contains(p2[j])) {
-						newPath.set(k++, p2[j]);
-						
-						if(k >= numCities) k = 0;
-					}
-				}
-				
-				newSolutions.add(new SalesmanSolution(newPath));
-			} else {
-				newSolutions.add(selectedSolutions.get(i));
+			searches = new LocalSearch[engine.getNumChunks()];
+			
+			for(int i = 0; i < searches.length; i++) {
+				searches[i] = new LocalSearch(distances, neighbors, closed);
 			}
 		}
 		
-		// copy new into segment of old
-		for(int i = 0; i < newSolutions.size(); i++) {
-			solutions.set(start + i, newSolutions.get(i));
-		}
-	}
-
-	@Override
-	public void mutate() {
-		// Swap mutation
-		for(int i = 0; i < solutions.size(); i++) {
-			if(rand.nextDouble() < MUTATION_PROBABILITY) {
-				int n = (int)(Math.ceil(Math.abs(rand.nextGaussian() * (numCities * MUTATION_SD_FACTOR)))) + 1;
-				
-				for(int j = 0; j < n; j++) {
-					int[] p = solutions.get(i).path;
-					
-					int a = rand.nextInt(numCities),
-						b = rand.nextInt(numCities),
-						c = p[a];
-					
-					p[a] = p[b];
-					p[b] = c;
-				}
-			}
+		@Override
+		public void mutate(GeneticEngine<TourPopulation> engine, int start, int end, int chunk, Random r) {
+			localSearchRange(engine.population, start, end, searches[chunk]);
 		}
 	}
 	
 	/**
-	 *  Version of mutate for parallelization
-	 *  
-	 * @param solutions
+	 * Mutates a range of solutions
+	 * 
+	 * @param pop
+	 * @param start first index, inclusive
+	 * @param end last index, exclusive
+	 * @param r random to use
 	 */
-	void parallelMutate(int start, int end) {
+	void mutateRange(TourPopulation pop, int start, int end, Random r) {
 		// Swap mutation
 		for(int i = start; i < end; i++) {
-			if(rand.nextDouble() < MUTATION_PROBABILITY) {
-				int n = rand.nextInt(3) + 1;
+			if(r.nextDouble() < MUTATION_PROBABILITY) {
+				int n = (int)(Math.ceil(Math.abs(r.nextGaussian() * (numCities * MUTATION_SD_FACTOR)))) + 1;
+				
+				int[] p = pop.paths;
+				int o = pop.offset(i);
 				
 				for(int j = 0; j < n; j++) {
-					int[] p = solutions.get(i).path;
+					int a = r.nextInt(numCities),
+						b = r.nextInt(numCities);
 					
-					int a = rand.nextInt(numCities),
-						b = rand.nextInt(numCities),
-						c = p[a];
+					// keep fitness current instead of walking the whole path later
+					if(pop.evaluated[i]) pop.fitness[i] += swapDelta(p, o, a, b);
 					
-					p[a] = p[b];
-					p[b] = c;
+					pop.swap(i, a, b);
 				}
 			}
 		}
@@ -334,16 +565,148 @@ public class Salesman extends GeneticsBase {
 	
 	@Override
 	public void runGeneration() {
-		select();
-		cross();
-		mutate();
-		generateFitness(); // we need fitness for our draw function so do that after a gen instead of before
+		if(!steadyState) {
+			super.runGeneration();
+			return;
+		}
+		
+		// a generation's worth of steps
+		beginGeneration();
+		int gens = numGenerations;
+		
+		while(numGenerations == gens && !deadlinePassed()) step();
+		
+		// cut short, so the children so far get into the pool before anyone picks parents again
+		if(numGenerations == gens && heapsReady) rank();
+		
+		endGeneration();
+	}
+	
+	/**
+	 * Breeds a few children from parents picked by the selection scheme, each replacing the worst
+	 * tour if it's shorter, so the best tour is never lost and a new best is known as soon as this
+	 * returns
+	 * Takes microseconds instead of a whole generation. Runs on the calling thread with rand.
+	 */
+	public void step() {
+		if(!heapsReady) setupSteadyState();
+		
+		TourPopulation pop = population;
+		Random r = rand;
+		
+		for(int c = 0; c < offspring.size; c++) {
+			int a = selection.pick(this, r),
+				b = selection.pick(this, r),
+				s = r.nextInt(numCities),
+				e = r.nextInt(numCities);
+			
+			if(s > e) {
+				int t = s;
+				s = e;
+				e = t;
+			}
+			
+			steadyCrossover.cross(pop.paths, pop.offset(a), pop.paths, pop.offset(b), offspring.paths, offspring.offset(c), s, e);
+			steadyParents[2 * c] = a;
+			steadyParents[(2 * c) + 1] = b;
+			offspring.rehash(c);
+			offspring.evaluated[c] = false;
+		}
+		
+		mutateRange(offspring, 0, offspring.size, r);
+		
+		if(improvement != null) {
+			LocalSearchStage stage = (LocalSearchStage) improvement;
+			stage.prepare(this);
+			localSearchRange(offspring, 0, offspring.size, stage.searches[0]);
+		}
+		
+		fitnessRange(offspring, 0, offspring.size);
+		
+		for(int c = 0; c < offspring.size; c++) {
+			int worst = worstHeap.top();
+			long h = offspring.hashes[c];
+			
+			// copies of a parent, like children of a tour with itself, only take away diversity
+			if(offspring.fitness[c] >= pop.fitness[worst] || h == pop.hashes[steadyParents[2 * c]] || h == pop.hashes[steadyParents[(2 * c) + 1]]) continue;
+			
+			pop.copy(worst, offspring, c);
+			worstHeap.update(worst);
+			bestHeap.update(worst);
+		}
+		
+		// a generation is as many children as there are tours
+		offspringBred += offspring.size;
+		
+		while(offspringBred >= numSolutions) {
+			offspringBred -= numSolutions;
+			numGenerations++;
+			trackBest(pop.fitness[bestHeap.top()]);
+			
+			// truncation picks from the best of the population as of the last ranking
+			rank();
+		}
+	}
+	
+	/**
+	 * Builds the heaps over the current population, and the buffers for breeding children
+	 */
+	void setupSteadyState() {
+		generateFitness();
+		
+		worstHeap.build(population);
+		bestHeap.build(population);
+		rank();
+		
+		if(offspring == null || offspring.length != numCities) {
+			offspring = new TourPopulation(STEADY_STATE_OFFSPRING, numCities);
+			steadyCrossover = new OrderCrossover(numCities);
+			steadyParents = new int[2 * STEADY_STATE_OFFSPRING];
+		}
 		
-		numGenerations++;
+		offspring.setClosed(closed);
+		heapsReady = true;
+	}
+	
+	/**
+	 * Sets whether generations are run by steps that replace the worst tours
+	 * Parents are picked by the selection scheme either way. With truncation they come from the
+	 * best fraction as ranked at the start of each generation's worth of steps, so children that
+	 * got into it since have to wait for the next ranking
+	 * 
+	 * @param enabled
+	 */
+	public void setSteadyState(boolean enabled) {
+		steadyState = enabled;
+		heapsReady = false;
+	}
+	
+	/**
+	 * @return a copy of the best tour, kept current by every step in steady state mode
+	 */
+	public int[] getBestPath() {
+		return population.getPath(heapsReady ? bestHeap.top() : population.best());
+	}
+	
+	/**
+	 * Replaces duplicates, and tracks time between new bests
+	 */
+	@Override
+	protected void generationDone() {
+		if(replaceDuplicates) replaceDuplicates();
 		
-		// Track time between new bests
-		double thisBest = solutions.get(0).fitness;
+		// the population is a new one
+		heapsReady = false;
 		
+		trackBest(population.fitness[0]);
+	}
+	
+	/**
+	 * Tracks time between new bests
+	 * 
+	 * @param thisBest best fitness of the generation
+	 */
+	void trackBest(double thisBest) {
 		if(thisBest < bestFitness) {
 			newBests++;
 			totalGensSinceImprovement += gensSinceImprovement;
@@ -353,54 +716,382 @@ public class Salesman extends GeneticsBase {
 		} else gensSinceImprovement++;
 	}
 	
-	public void runGenerationParalel() {
-		select();
+	/**
+	 * Gives every tour that's the same as one before it a few random swaps
+	 * Tours are compared by hash, the first of each is kept as is so the best elite never changes
+	 */
+	void replaceDuplicates() {
+		TourPopulation pop = population;
 		
-		// run the other 3 in parallel
+		// twice as many slots as tours keeps probing short
+		if(seenHashes.length < 2 * numSolutions) seenHashes = new long[Integer.highestOneBit(Math.max(1, numSolutions)) * 4];
+		else Arrays.fill(seenHashes, 0);
 		
-		numGenerations++;
+		int mask = seenHashes.length - 1;
+		
+		for(int i = 0; i < numSolutions; i++) {
+			// 0 marks an empty slot
+			long h = pop.hashes[i] == 0 ? 1 : pop.hashes[i];
+			int s = (int) (h ^ (h >>> 32)) & mask;
+			
+			while(seenHashes[s] != 0 && seenHashes[s] != h) s = (s + 1) & mask;
+			
+			if(seenHashes[s] == 0) {
+				seenHashes[s] = h;
+				continue;
+			}
+			
+			// a duplicate, keeping fitness and the hash current
+			int o = pop.offset(i);
+			
+			for(int j = 0; j < DUPLICATE_SWAPS; j++) {
+				int a = rand.nextInt(numCities),
+					b = rand.nextInt(numCities);
+				
+				if(pop.evaluated[i]) pop.fitness[i] += swapDelta(pop.paths, o, a, b);
+				pop.swap(i, a, b);
+			}
+		}
 	}
-
+	
+	/**
+	 * Sets whether tours that are the same as one before them are changed at the end of each
+	 * generation
+	 * 
+	 * @param enabled
+	 */
+	public void setReplaceDuplicates(boolean enabled) {
+		replaceDuplicates = enabled;
+	}
+	
+	/**
+	 * @return how many tours are the same as one before them, by hash
+	 */
+	public int countDuplicates() {
+		long[] hashes = Arrays.copyOf(population.hashes, numSolutions);
+		Arrays.sort(hashes);
+		
+		int n = 0;
+		for(int i = 1; i < hashes.length; i++) {
+			if(hashes[i] == hashes[i - 1]) n++;
+		}
+		
+		return n;
+	}
+	
+	/**
+	 * Standard deviation of tour length over the mean, tours that differ rarely have the same length
+	 */
+	@Override
+	public double getDiversity() {
+		double[] fitness = population.fitness;
+		double mean = getMeanFitness(),
+			   ss = 0;
+		
+		for(int i = 0; i < numSolutions; i++) {
+			ss += (fitness[i] - mean) * (fitness[i] - mean);
+		}
+		
+		return mean == 0 ? 0 : Math.sqrt(ss / numSolutions) / mean;
+	}
+	
 	@Override
-	public void draw(Graphics2D g) {
-		g.setStroke(new BasicStroke(2f));
-		
-		// draw all solutions with low opacity
-		// bitmask stuff reduces alpha
-		g.setColor(new Color((Color.blue.getRGB() & 0x00FF_FFFF) | (POPULATION_OPACITY << 24), true));
-		for(int i = 0; i < solutions.size(); i++) {
-			int[] path = solutions.get(i).path;
+	public List<int[]> emigrants(int count) {
+		generateFitness();
+		
+		// best() leaves order alone, steady state picks parents from it
+		int[] best = best(count);
+		
+		List<int[]> tours = new ArrayList<>(best.length);
+		for(int i : best) {
+			tours.add(population.getPath(i));
+		}
+		
+		return tours;
+	}
+	
+	@Override
+	public void immigrate(List<int[]> migrants) {
+		generateFitness();
+		
+		for(int[] tour : migrants) {
+			if(tour.length != numCities) throw new IllegalArgumentException("migrant has " + tour.length + " cities, expected " + numCities);
+			
+			// replace the worst
+			double[] fitness = population.fitness;
+			int worst = 0;
 			
-			for(int j = 1; j < path.length; j++) {
-				g.drawLine(cities[path[j]][0], cities[path[j]][1],
-						   cities[path[j - 1]][0], cities[path[j - 1]][1]);
+			for(int i = 1; i < numSolutions; i++) {
+				if(fitness[i] > fitness[worst]) worst = i;
 			}
+			
+			System.arraycopy(tour, 0, population.paths, population.offset(worst), numCities);
+			population.rehash(worst);
+			fitness[worst] = fitness(tour);
+			population.evaluated[worst] = true;
+			
+			heapsReady = false;
 		}
+	}
+	
+	@Override
+	public double fitness(int[] tour) {
+		return closed ? distances.tourLength(tour, 0, numCities) : distances.pathLength(tour, 0, numCities);
+	}
+	
+	@Override
+	public boolean minimizesFitness() {
+		return true;
+	}
+	
+	@Override
+	public void writeState(StateWriter out) {
+		// cities
+		out.putString(instance.name);
+		out.putBoolean(randomCities);
+		out.putBoolean(instance.closed);
+		out.putString(instance.rounding.name());
+		out.putDoubles(instance.xs);
+		out.putDoubles(instance.ys);
+		out.putDoubles(instance.explicit == null ? null : ((ExplicitDistances) instance.explicit).matrix);
+		
+		// settings
+		out.putInt(numCities);
+		out.putInt(numSolutions);
+		out.putInt(elites);
+		out.putDouble(eliteProb);
+		out.putDouble(mutProb);
+		out.putString(distanceMode.name());
+		out.putString(selectionScheme.name());
+		out.putInt(tournamentSize);
+		out.putBoolean(improvement != null);
+		
+		// progress
+		out.putInt(numGenerations);
+		out.putInt(gensSinceImprovement);
+		out.putInt(totalGensSinceImprovement);
+		out.putInt(newBests);
+		out.putDouble(bestFitness);
 		
-		// draw best solution
-		/*
-		g.setColor(Color.green);
-		int[] path = solutions.get(0).path;
+		out.putInts(population.paths);
+		out.putDoubles(population.fitness);
+		out.putBooleans(population.evaluated);
 		
-		for(int i = 1; i < path.length; i++) {
-			g.drawLine(cities[path[i]][0], cities[path[i]][1],
-					   cities[path[i - 1]][0], cities[path[i - 1]][1]);
+		out.putRandom(rand);
+	}
+	
+	@Override
+	public void readState(StateReader in) throws IOException {
+		// read everything before changing anything, so a bad file leaves this as it was
+		String name = in.getString();
+		boolean random = in.getBoolean(),
+				isClosed = in.getBoolean();
+		String roundingName = in.getString();
+		double[] xs = in.getDoubles(),
+				 ys = in.getDoubles(),
+				 matrix = in.getDoubles();
+		
+		int cities = in.getInt(),
+			solutions = in.getInt(),
+			eliteCount = in.getInt();
+		double eliteP = in.getDouble(),
+			   mutP = in.getDouble();
+		String modeName = in.getString(),
+			   schemeName = in.getString();
+		int tournament = in.getInt();
+		boolean search = in.getBoolean();
+		
+		int gens = in.getInt(),
+			sinceImprovement = in.getInt(),
+			totalSinceImprovement = in.getInt(),
+			bests = in.getInt();
+		double best = in.getDouble();
+		
+		int[] paths = in.getInts();
+		double[] fitness = in.getDoubles();
+		boolean[] evaluated = in.getBooleans();
+		
+		SavableRandom r = in.getRandom();
+		
+		DistanceProvider.Rounding rounding;
+		DistanceProvider.Mode mode;
+		SelectionScheme scheme;
+		
+		try {
+			rounding = DistanceProvider.Rounding.valueOf(roundingName);
+			mode = DistanceProvider.Mode.valueOf(modeName);
+			scheme = SelectionScheme.valueOf(schemeName);
+		} catch(IllegalArgumentException | NullPointerException e) {
+			throw new IOException("bad salesman settings", e);
 		}
-		*/
 		
-		// draw cities
-		g.setColor(Color.blue);
-		for(int i = 0; i < cities.length; i++) {
-			g.fillRect(cities[i][0] - 4, cities[i][1] - 4, 8, 8);
+		if(cities < 2 || solutions < 1 || eliteCount < 0 || eliteCount > solutions ||
+		   paths == null || paths.length != cities * solutions ||
+		   fitness == null || fitness.length != solutions ||
+		   evaluated == null || evaluated.length != solutions ||
+		   (matrix == null && (xs == null || ys == null || xs.length != cities || ys.length != cities)) ||
+		   (matrix != null && matrix.length != cities * cities)) {
+			throw new IOException("bad salesman state");
 		}
 		
-		// display best fitness
-		g.setColor(Color.black);
-		g.drawString(String.format("%.2f", (newBests == 0 ? 0 : (double)(totalGensSinceImprovement) / newBests)), 5, APBioSimulation.HEIGHT - 25);
-		g.drawString(String.format("%d", gensSinceImprovement), 5, APBioSimulation.HEIGHT - 15);
-		g.drawString(String.format("%.2f", solutions.get(0).fitness), 5, APBioSimulation.HEIGHT - 5);
+		for(int c : paths) {
+			if(c < 0 || c >= cities) throw new IOException("bad city " + c + " in salesman state");
+		}
+		
+		TspInstance inst = matrix == null ? new TspInstance(name, xs, ys, rounding, isClosed)
+										  : new TspInstance(name, new ExplicitDistances(matrix, cities, xs, ys), isClosed);
+		
+		// buffers for the new sizes
+		numCities = cities;
+		numSolutions = solutions;
+		elites = eliteCount;
+		eliteProb = eliteP;
+		mutProb = mutP;
 		
-		g.drawString(String.format("%d", numGenerations), APBioSimulation.WIDTH - 75, APBioSimulation.HEIGHT - 5);
+		setPopulation(new TourPopulation(numSolutions, numCities), new TourPopulation(numSolutions, numCities));
+		
+		System.arraycopy(paths, 0, population.paths, 0, paths.length);
+		System.arraycopy(fitness, 0, population.fitness, 0, numSolutions);
+		System.arraycopy(evaluated, 0, population.evaluated, 0, numSolutions);
+		
+		// cities, with the grid and searches built fresh for them
+		randomCities = random;
+		distanceMode = mode;
+		cityGrid = null;
+		setLocalSearch(false);
+		useInstance(inst);
+		population.rehashAll();
+		heapsReady = false;
+		
+		tournamentSize = tournament;
+		selectionScheme = scheme;
+		setupOperators();
+		
+		numGenerations = gens;
+		gensSinceImprovement = sinceImprovement;
+		totalGensSinceImprovement = totalSinceImprovement;
+		newBests = bests;
+		bestFitness = best;
+		
+		rand = r;
+		
+		// chunk randoms come from rand
+		setThreads(getThreads());
+		if(search) setLocalSearch(true);
+	}
+
+	@Override
+	public RenderSnapshot snapshot(RenderSnapshot reuse) {
+		Snapshot s = reuse instanceof Snapshot ? (Snapshot) reuse : new Snapshot();
+		
+		s.numSolutions = numSolutions;
+		s.numCities = numCities;
+		s.opacity = POPULATION_OPACITY;
+		s.closed = closed;
+		s.hasCoordinates = distances.hasCoordinates();
+		
+		s.paths = RenderSnapshot.fit(s.paths, population.paths.length);
+		System.arraycopy(population.paths, 0, s.paths, 0, population.paths.length);
+		
+		s.cityX = RenderSnapshot.fit(s.cityX, numCities);
+		s.cityY = RenderSnapshot.fit(s.cityY, numCities);
+		
+		if(s.hasCoordinates) {
+			for(int i = 0; i < numCities; i++) {
+				s.cityX[i] = screenX(i);
+				s.cityY[i] = screenY(i);
+			}
+		}
+		
+		s.meanGensBetweenBests = newBests == 0 ? 0 : (double)(totalGensSinceImprovement) / newBests;
+		s.gensSinceImprovement = gensSinceImprovement;
+		s.best = population.fitness[heapsReady ? bestHeap.top() : 0];
+		s.numGenerations = numGenerations;
+		
+		return s;
+	}
+	
+	/**
+	 * What a Salesman draws
+	 */
+	static class Snapshot extends RenderSnapshot {
+		
+		int numSolutions,
+			opacity,
+			numCities,
+			gensSinceImprovement,
+			numGenerations;
+		
+		boolean closed,
+				hasCoordinates;
+		
+		int[] paths,
+			  cityX,
+			  cityY;
+		
+		double meanGensBetweenBests,
+			   best;
+		
+		@Override
+		public void draw(Graphics2D g) {
+			g.setStroke(new BasicStroke(2f));
+			
+			if(hasCoordinates) {
+				// draw all solutions with low opacity
+				// bitmask stuff reduces alpha
+				g.setColor(new Color((Color.blue.getRGB() & 0x00FF_FFFF) | (opacity << 24), true));
+				for(int i = 0; i < numSolutions; i++) {
+					int o = i * numCities;
+					
+					for(int j = o + 1; j < o + numCities; j++) {
+						drawEdge(g, paths[j], paths[j - 1]);
+					}
+					
+					if(closed) drawEdge(g, paths[o + numCities - 1], paths[o]);
+				}
+				
+				// draw cities
+				g.setColor(Color.blue);
+				for(int i = 0; i < numCities; i++) {
+					g.fillRect(cityX[i] - 4, cityY[i] - 4, 8, 8);
+				}
+			}
+			
+			// display best fitness
+			g.setColor(Color.black);
+			g.drawString(String.format("%.2f", meanGensBetweenBests), 5, APBioSimulation.HEIGHT - 25);
+			g.drawString(String.format("%d", gensSinceImprovement), 5, APBioSimulation.HEIGHT - 15);
+			g.drawString(String.format("%.2f", best), 5, APBioSimulation.HEIGHT - 5);
+			
+			g.drawString(String.format("%d", numGenerations), APBioSimulation.WIDTH - 75, APBioSimulation.HEIGHT - 5);
+		}
+		
+		/**
+		 * Draws the edge between two cities
+		 * 
+		 * @param g
+		 * @param a
+		 * @param b
+		 */
+		void drawEdge(Graphics2D g, int a, int b) {
+			g.drawLine(cityX[a], cityY[a], cityX[b], cityY[b]);
+		}
+	}
+	
+	/**
+	 * @param city
+	 * @return x position of the city on the canvas
+	 */
+	int screenX(int city) {
+		return (int) ((distances.x(city) * drawScale) + drawX);
+	}
+	
+	/**
+	 * @param city
+	 * @return y position of the city on the canvas
+	 */
+	int screenY(int city) {
+		return (int) ((distances.y(city) * drawScale) + drawY);
 	}
 
 }
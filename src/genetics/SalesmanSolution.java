@@ -9,6 +9,9 @@ public class SalesmanSolution implements Comparable<SalesmanSolution> {
 	
 	public double fitness;
 	
+	// true if fitness matches the path
+	public boolean evaluated;
+	
 	/**
 	 * Random solution
 	 */
@@ -33,6 +36,7 @@ public class SalesmanSolution implements Comparable<SalesmanSolution> {
 	public SalesmanSolution(SalesmanSolution other) {
 		this.path = other.path;
 		this.fitness = other.fitness;
+		this.evaluated = other.evaluated;
 	}
 	
 	/**
@@ -0,0 +1,11 @@
+package genetics;
+
+/**
+ * How parents are picked after the elites
+ * 
+ * @author Alex
+ */
+public enum SelectionScheme {
+	TOURNAMENT,	// best of a few random individuals
+	TRUNCATION	// random individual from the best fraction of the population
+}
@@ -0,0 +1,58 @@
+package genetics;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands snapshots from the simulation thread to a renderer without either waiting on the other
+ * Three snapshots go around: the simulation fills its back one and swaps it into the middle, the
+ * renderer swaps its front one for the middle when there's a newer one there. The only thing
+ * shared is the middle, through one atomic reference, so a frame never sees a snapshot that's
+ * being filled and snapshots are reused rather than allocated every frame.
+ * 
+ * One thread publishes and one thread renders. A snapshot from latest() may be read until the next
+ * call to latest(), which can hand it back to the simulation to be filled, so a second reader could
+ * be drawing a snapshot while it's overwritten.
+ * 
+ * @author Alex
+ */
+public class SnapshotExchange {
+	
+	final AtomicReference<RenderSnapshot> middle = new AtomicReference<>();
+	
+	// only the publishing thread
+	RenderSnapshot back;
+	
+	long published;
+	
+	// only the renderer
+	RenderSnapshot front;
+	
+	/**
+	 * Snapshots a simulation and makes it the latest
+	 * Call from the thread running the simulation, between generations
+	 * 
+	 * @param sim
+	 */
+	public void publish(GeneticsBase sim) {
+		RenderSnapshot s = sim.snapshot(back);
+		s.sequence = ++published;
+		
+		// whatever was in the middle wasn't drawn, fill it next time
+		back = middle.getAndSet(s);
+	}
+	
+	/**
+	 * Call only from the renderer, the snapshot it returned last time may be reused after this
+	 * 
+	 * @return newest published snapshot, or null if nothing has been published
+	 */
+	public synchronized RenderSnapshot latest() {
+		RenderSnapshot m = middle.get();
+		
+		if(m != null && (front == null || m.sequence > front.sequence)) {
+			front = middle.getAndSet(front);
+		}
+		
+		return front;
+	}
+}
@@ -0,0 +1,219 @@
+package genetics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A population of tours stored in one contiguous array, the permutation encoding
+ * Tour i is paths[i * length] to paths[(i + 1) * length - 1], with its fitness in fitness[i]
+ * 
+ * Each tour also has a Zobrist style hash, the XOR of a key for each of its edges. A tour has the
+ * same hash whichever city it starts at and whichever way it goes, and swapping two cities only
+ * changes the hash by the few edges around them, so it's kept current as tours are changed.
+ * 
+ * @author Alex
+ */
+public class TourPopulation extends Population {
+	
+	final int length;
+	
+	final int[] paths;
+	
+	// hash of the edges of each tour
+	final long[] hashes;
+	
+	// true if tours return to the first city, which adds an edge
+	boolean closed;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param size number of tours
+	 * @param length number of cities in each tour
+	 */
+	public TourPopulation(int size, int length) {
+		super(size, true);
+		this.length = length;
+		
+		paths = new int[size * length];
+		hashes = new long[size];
+	}
+	
+	/**
+	 * Replaces a tour with a random one
+	 * 
+	 * @param i index of the tour
+	 * @param r
+	 */
+	@Override
+	public void randomize(int i, Random r) {
+		int offset = i * length;
+		
+		for(int j = 0; j < length; j++) {
+			paths[offset + j] = j;
+		}
+		
+		// Fisher-Yates shuffle
+		for(int j = length - 1; j > 0; j--) {
+			int k = r.nextInt(j + 1),
+				t = paths[offset + j];
+			
+			paths[offset + j] = paths[offset + k];
+			paths[offset + k] = t;
+		}
+		
+		rehash(i);
+		fitness[i] = 0;
+		evaluated[i] = false;
+	}
+	
+	@Override
+	protected void copyGenes(int to, Population from, int fromIndex) {
+		System.arraycopy(((TourPopulation) from).paths, fromIndex * length, paths, to * length, length);
+		hashes[to] = ((TourPopulation) from).hashes[fromIndex];
+	}
+	
+	/**
+	 * Key of the edge between two cities, the same either way around
+	 * A splitmix64 of the pair instead of a table of random keys, which would need one per pair
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	static long edgeKey(int a, int b) {
+		long z = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+		
+		z += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * @param o offset of the tour
+	 * @param j position in the tour
+	 * @return key of the edge leaving position j, 0 if there isn't one
+	 */
+	long edgeAt(int o, int j) {
+		if(j < 0) return 0;
+		if(j < length - 1) return edgeKey(paths[o + j], paths[o + j + 1]);
+		return closed ? edgeKey(paths[o + j], paths[o]) : 0;
+	}
+	
+	/**
+	 * Hashes a tour from scratch, after it was changed some other way than swap()
+	 * 
+	 * @param i
+	 */
+	public void rehash(int i) {
+		int o = i * length;
+		long h = 0;
+		
+		for(int j = 0; j < length; j++) {
+			h ^= edgeAt(o, j);
+		}
+		
+		hashes[i] = h;
+	}
+	
+	/**
+	 * Swaps the cities at two positions of a tour, updating its hash
+	 * Fitness is left to the caller
+	 * 
+	 * @param i index of the tour
+	 * @param a position of the first city
+	 * @param b position of the second city
+	 */
+	public void swap(int i, int a, int b) {
+		if(a == b) return;
+		
+		int o = i * length;
+		
+		// take the edges around both out, swap, then put the new ones in
+		long h = hashes[i] ^ edgesAround(o, a, b);
+		
+		int t = paths[o + a];
+		paths[o + a] = paths[o + b];
+		paths[o + b] = t;
+		
+		hashes[i] = h ^ edgesAround(o, a, b);
+	}
+	
+	/**
+	 * @param o offset of the tour
+	 * @param a
+	 * @param b
+	 * @return XOR of the keys of the edges touching positions a and b, each counted once
+	 */
+	long edgesAround(int o, int a, int b) {
+		// an edge is named by the position it leaves from
+		int pa = prev(a),
+			pb = prev(b);
+		
+		long h = edgeAt(o, a) ^ edgeAt(o, pa);
+		if(b != pa) h ^= edgeAt(o, b);
+		if(pb != a && pb != pa) h ^= edgeAt(o, pb);
+		
+		return h;
+	}
+	
+	/**
+	 * @param j
+	 * @return position before j, or -1 if there isn't one
+	 */
+	int prev(int j) {
+		if(j > 0) return j - 1;
+		return closed ? length - 1 : -1;
+	}
+	
+	/**
+	 * Sets whether tours return to the first city, rehashing every tour if that changed
+	 * 
+	 * @param closed
+	 */
+	public void setClosed(boolean closed) {
+		if(this.closed == closed) return;
+		
+		this.closed = closed;
+		rehashAll();
+	}
+	
+	/**
+	 * Hashes every tour from scratch
+	 */
+	public void rehashAll() {
+		for(int i = 0; i < size; i++) rehash(i);
+	}
+	
+	/**
+	 * @param i
+	 * @return hash of the edges of tour i
+	 */
+	public long hash(int i) {
+		return hashes[i];
+	}
+	
+	/**
+	 * @param i
+	 * @return index in paths of the first city of tour i
+	 */
+	public int offset(int i) {
+		return i * length;
+	}
+	
+	/**
+	 * @param i
+	 * @return a copy of tour i
+	 */
+	public int[] getPath(int i) {
+		return Arrays.copyOfRange(paths, i * length, (i + 1) * length);
+	}
+	
+	/**
+	 * @return number of cities in each tour
+	 */
+	public int length() {
+		return length;
+	}
+}
@@ -0,0 +1,48 @@
+package genetics;
+
+import java.util.Random;
+
+/**
+ * Each parent is the best of a few individuals picked at random
+ * Works with any encoding and either direction of fitness
+ * 
+ * @author Alex
+ */
+public class TournamentSelection implements GeneticEngine.Selection {
+	
+	final int size;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param size number of individuals in each tournament
+	 */
+	public TournamentSelection(int size) {
+		this.size = Math.max(1, size);
+	}
+	
+	@Override
+	public int pick(GeneticEngine<?> engine, Random r) {
+		Population pop = engine.population;
+		double[] fitness = pop.fitness;
+		double sign = pop.sign;
+		int n = pop.size,
+			best = r.nextInt(n);
+		
+		for(int j = 1; j < size; j++) {
+			int candidate = r.nextInt(n);
+			
+			// take the best, the first one found on a tie
+			if(sign * fitness[candidate] < sign * fitness[best]) best = candidate;
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * @return number of individuals in each tournament
+	 */
+	public int getSize() {
+		return size;
+	}
+}
@@ -0,0 +1,33 @@
+package genetics;
+
+import java.util.Random;
+
+/**
+ * Each parent is a random individual from the best fraction of the population
+ * 
+ * @author Alex
+ */
+public class TruncationSelection implements GeneticEngine.Selection {
+	
+	final double fraction;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param fraction fraction of the population parents are picked from
+	 */
+	public TruncationSelection(double fraction) {
+		this.fraction = fraction;
+	}
+	
+	@Override
+	public int ranked(int size, int elites) {
+		// never fewer than the elites, or than one
+		return Math.min(size, Math.max(Math.max(elites, 1), (int) (size * fraction)));
+	}
+	
+	@Override
+	public int pick(GeneticEngine<?> engine, Random r) {
+		return engine.order[r.nextInt(ranked(engine.population.size, engine.elites))];
+	}
+}
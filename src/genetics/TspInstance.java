@@ -0,0 +1,198 @@
+package genetics;
+
+import java.io.IOException;
+import java.util.Random;
+
+import graphics.APBioSimulation;
+
+/**
+ * A set of cities for the Salesman, either random or loaded from a file
+ * Distance providers are cached so several Salesmen on the same instance share one
+ * 
+ * @author Alex
+ */
+public class TspInstance {
+	
+	final String name;
+	
+	final int dimension;
+	
+	// null if the instance only has explicit distances
+	final double[] xs, ys;
+	
+	final DistanceProvider.Rounding rounding;
+	
+	// non-null if the instance has explicit distances
+	final DistanceProvider explicit;
+	
+	// true if tours return to the first city, as in TSPLIB
+	final boolean closed;
+	
+	DistanceProvider cached;
+	
+	DistanceProvider.Mode cachedMode;
+	
+	/**
+	 * Instance with distances from coordinates
+	 * 
+	 * @param name
+	 * @param xs x coordinate of each city
+	 * @param ys y coordinate of each city
+	 * @param rounding how distances are rounded
+	 * @param closed true if tours return to the first city
+	 */
+	public TspInstance(String name, double[] xs, double[] ys, DistanceProvider.Rounding rounding, boolean closed) {
+		this.name = name;
+		this.dimension = xs.length;
+		this.xs = xs;
+		this.ys = ys;
+		this.rounding = rounding;
+		this.explicit = null;
+		this.closed = closed;
+	}
+	
+	/**
+	 * Instance with explicit distances
+	 * 
+	 * @param name
+	 * @param distances
+	 * @param closed true if tours return to the first city
+	 */
+	public TspInstance(String name, ExplicitDistances distances, boolean closed) {
+		this.name = name;
+		this.dimension = distances.size();
+		this.xs = distances.xs;
+		this.ys = distances.ys;
+		this.rounding = DistanceProvider.Rounding.NONE;
+		this.explicit = distances;
+		this.closed = closed;
+	}
+	
+	/**
+	 * Scatters cities at random integer points, with open paths like the original simulation
+	 * 
+	 * @param numCities
+	 * @param width
+	 * @param height
+	 * @param rand
+	 * @return
+	 */
+	public static TspInstance random(int numCities, int width, int height, Random rand) {
+		double[] xs = new double[numCities],
+				 ys = new double[numCities];
+		
+		for(int i = 0; i < numCities; i++) {
+			xs[i] = rand.nextInt(width);
+			ys[i] = rand.nextInt(height);
+		}
+		
+		return new TspInstance("random", xs, ys, DistanceProvider.Rounding.NONE, false);
+	}
+	
+	/**
+	 * Makes an instance from a short description
+	 * 
+	 * @param spec path to a TSPLIB file, or random:cities[:seed] for random cities on the canvas.
+	 *             Give a seed when several processes need the same cities
+	 * @return
+	 * @throws IOException if the file can't be loaded
+	 */
+	public static TspInstance fromSpec(String spec) throws IOException {
+		if(spec.startsWith("random:")) {
+			String[] parts = spec.split(":");
+			
+			int numCities = Integer.parseInt(parts[1]);
+			Random rand = parts.length > 2 ? new Random(Long.parseLong(parts[2])) : new Random();
+			
+			return random(numCities, APBioSimulation.WIDTH, APBioSimulation.HEIGHT, rand);
+		}
+		
+		return TspLibLoader.load(spec);
+	}
+	
+	/**
+	 * Returns the distances between cities, reusing the last provider if the mode matches
+	 * Explicit instances always return their own distances
+	 * 
+	 * @param mode
+	 * @return
+	 */
+	public synchronized DistanceProvider distances(DistanceProvider.Mode mode) {
+		if(explicit != null) return explicit;
+		
+		if(cached == null || cachedMode != mode) {
+			cached = DistanceProvider.create(xs, ys, mode, rounding);
+			cachedMode = mode;
+		}
+		
+		return cached;
+	}
+	
+	/**
+	 * @return name of the instance
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return number of cities
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+	
+	/**
+	 * @return true if tours return to the first city
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	/**
+	 * @return true if the cities have coordinates
+	 */
+	public boolean hasCoordinates() {
+		return xs != null;
+	}
+	
+	/**
+	 * 64 bit hash of the cities and how distances between them are measured, so processes can
+	 * check they're solving the same instance. Explicit instances hash every distance.
+	 * 
+	 * @return
+	 */
+	public long fingerprint() {
+		long h = mix(dimension);
+		h = mix(h ^ (closed ? 1 : 2));
+		h = mix(h ^ rounding.ordinal());
+		
+		if(explicit != null) {
+			for(int a = 0; a < dimension; a++) {
+				for(int b = 0; b < dimension; b++) {
+					h = mix(h ^ Double.doubleToLongBits(explicit.dist(a, b)));
+				}
+			}
+		} else {
+			for(int i = 0; i < dimension; i++) {
+				h = mix(h ^ Double.doubleToLongBits(xs[i]));
+				h = mix(h ^ Double.doubleToLongBits(ys[i]));
+			}
+		}
+		
+		return h;
+	}
+	
+	/**
+	 * splitmix64 finalizer
+	 * 
+	 * @param z
+	 * @return
+	 */
+	static long mix(long z) {
+		z += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
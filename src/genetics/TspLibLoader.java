@@ -0,0 +1,399 @@
+package genetics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads TSPLIB .tsp files
+ * The file is memory mapped and numbers are parsed straight from its bytes, only the few header
+ * keywords become Strings
+ * 
+ * Supports EUC_2D, CEIL_2D, and EXPLICIT instances with any of the full, upper, or lower matrix
+ * formats. Tours are closed, like the published optima.
+ * 
+ * @author Alex
+ */
+public class TspLibLoader {
+	
+	final ByteBuffer buf;
+	
+	final int limit;
+	
+	int pos;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param buf contents of the file
+	 */
+	TspLibLoader(ByteBuffer buf) {
+		this.buf = buf;
+		this.limit = buf.limit();
+		this.pos = 0;
+	}
+	
+	/**
+	 * Loads an instance from a file
+	 * 
+	 * @param file path to the .tsp file
+	 * @return
+	 * @throws IOException if the file can't be read or isn't a supported instance
+	 */
+	public static TspInstance load(String file) throws IOException {
+		return load(Paths.get(file));
+	}
+	
+	/**
+	 * Loads an instance from a file
+	 * 
+	 * @param file path to the .tsp file
+	 * @return
+	 * @throws IOException if the file can't be read or isn't a supported instance
+	 */
+	public static TspInstance load(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			
+			if(size > Integer.MAX_VALUE) throw new IOException("file too large to map: " + file);
+			
+			return new TspLibLoader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)).parse(file.getFileName().toString());
+		}
+	}
+	
+	/**
+	 * Parses the whole file
+	 * 
+	 * @param fallbackName name to use if the file doesn't have one
+	 * @return
+	 * @throws IOException
+	 */
+	TspInstance parse(String fallbackName) throws IOException {
+		String name = fallbackName,
+			   type = "TSP",
+			   weightType = null,
+			   weightFormat = "FULL_MATRIX";
+		
+		int dimension = -1;
+		
+		double[] xs = null,
+				 ys = null,
+				 displayXs = null,
+				 displayYs = null,
+				 matrix = null;
+		
+		parsing:
+		while(true) {
+			skipWhitespace();
+			if(pos >= limit) break;
+			
+			String key = readKey();
+			
+			switch(key) {
+				case "EOF":
+					break parsing;
+				
+				case "NODE_COORD_SECTION":
+					xs = new double[requireDimension(dimension)];
+					ys = new double[dimension];
+					readCoordinates(xs, ys);
+					break;
+				
+				case "DISPLAY_DATA_SECTION":
+					displayXs = new double[requireDimension(dimension)];
+					displayYs = new double[dimension];
+					readCoordinates(displayXs, displayYs);
+					break;
+				
+				case "EDGE_WEIGHT_SECTION":
+					matrix = readWeights(requireDimension(dimension), weightFormat);
+					break;
+				
+				case "NAME":
+					name = readValue();
+					break;
+				
+				case "TYPE":
+					type = readValue();
+					break;
+				
+				case "DIMENSION":
+					String value = readValue();
+					
+					try {
+						dimension = Integer.parseInt(value);
+					} catch(NumberFormatException e) {
+						throw new IOException("bad DIMENSION " + value, e);
+					}
+					
+					if(dimension <= 0) throw new IOException("bad DIMENSION " + value);
+					break;
+				
+				case "EDGE_WEIGHT_TYPE":
+					weightType = readValue();
+					break;
+				
+				case "EDGE_WEIGHT_FORMAT":
+					weightFormat = readValue();
+					break;
+				
+				default:
+					if(key.endsWith("_SECTION")) throw new IOException("unsupported section " + key);
+					
+					// COMMENT, NODE_COORD_TYPE, DISPLAY_DATA_TYPE and friends
+					readValue();
+			}
+		}
+		
+		if(!type.startsWith("TSP")) throw new IOException("unsupported TYPE " + type);
+		if(weightType == null) throw new IOException("missing EDGE_WEIGHT_TYPE");
+		
+		switch(weightType) {
+			case "EUC_2D":
+				if(xs == null) throw new IOException("missing NODE_COORD_SECTION");
+				return new TspInstance(name, xs, ys, DistanceProvider.Rounding.NEAREST, true);
+			
+			case "CEIL_2D":
+				if(xs == null) throw new IOException("missing NODE_COORD_SECTION");
+				return new TspInstance(name, xs, ys, DistanceProvider.Rounding.UP, true);
+			
+			case "EXPLICIT":
+				if(matrix == null) throw new IOException("missing EDGE_WEIGHT_SECTION");
+				
+				// coordinates in an explicit instance are only for display
+				if(displayXs == null) {
+					displayXs = xs;
+					displayYs = ys;
+				}
+				
+				return new TspInstance(name, new ExplicitDistances(matrix, dimension, displayXs, displayYs), true);
+			
+			default:
+				throw new IOException("unsupported EDGE_WEIGHT_TYPE " + weightType);
+		}
+	}
+	
+	/**
+	 * @param dimension
+	 * @return dimension, if it's been given
+	 * @throws IOException if it hasn't
+	 */
+	int requireDimension(int dimension) throws IOException {
+		if(dimension <= 0) throw new IOException("section before DIMENSION");
+		return dimension;
+	}
+	
+	/**
+	 * Reads "id x y" lines into coordinate arrays
+	 * 
+	 * @param xs
+	 * @param ys
+	 * @throws IOException
+	 */
+	void readCoordinates(double[] xs, double[] ys) throws IOException {
+		for(int i = 0; i < xs.length; i++) {
+			int id = (int) readNumber() - 1;
+			
+			if(id < 0 || id >= xs.length) throw new IOException("node id out of range at byte " + pos);
+			
+			xs[id] = readNumber();
+			ys[id] = readNumber();
+		}
+	}
+	
+	/**
+	 * Reads an edge weight section into a full matrix
+	 * 
+	 * @param n number of cities
+	 * @param format EDGE_WEIGHT_FORMAT
+	 * @return flat row-major n by n matrix
+	 * @throws IOException
+	 */
+	double[] readWeights(int n, String format) throws IOException {
+		// past this the matrix doesn't fit in an array, and n * n overflows
+		if((long) n * n > Integer.MAX_VALUE - 8) throw new IOException("DIMENSION " + n + " is too big for an explicit weight matrix");
+		
+		double[] matrix = new double[n * n];
+		
+		for(int i = 0; i < n; i++) {
+			int from, to;
+			
+			// which columns row i lists
+			switch(format) {
+				case "FULL_MATRIX":
+					from = 0;
+					to = n;
+					break;
+				
+				case "UPPER_ROW":
+					from = i + 1;
+					to = n;
+					break;
+				
+				case "UPPER_DIAG_ROW":
+					from = i;
+					to = n;
+					break;
+				
+				case "LOWER_ROW":
+					from = 0;
+					to = i;
+					break;
+				
+				case "LOWER_DIAG_ROW":
+					from = 0;
+					to = i + 1;
+					break;
+				
+				default:
+					throw new IOException("unsupported EDGE_WEIGHT_FORMAT " + format);
+			}
+			
+			for(int j = from; j < to; j++) {
+				double w = readNumber();
+				
+				matrix[(i * n) + j] = w;
+				matrix[(j * n) + i] = w;
+			}
+		}
+		
+		return matrix;
+	}
+	
+	/**
+	 * Reads a keyword, stopping at whitespace or a colon
+	 * 
+	 * @return
+	 */
+	String readKey() {
+		int start = pos;
+		
+		while(pos < limit) {
+			byte b = buf.get(pos);
+			if(b == ':' || isWhitespace(b)) break;
+			pos++;
+		}
+		
+		return ascii(start, pos);
+	}
+	
+	/**
+	 * Reads the rest of a header line, skipping the colon
+	 * 
+	 * @return the trimmed value
+	 */
+	String readValue() {
+		while(pos < limit && (buf.get(pos) == ' ' || buf.get(pos) == '\t' || buf.get(pos) == ':')) pos++;
+		
+		int start = pos;
+		while(pos < limit && buf.get(pos) != '\n' && buf.get(pos) != '\r') pos++;
+		
+		int end = pos;
+		while(end > start && isWhitespace(buf.get(end - 1))) end--;
+		
+		return ascii(start, end);
+	}
+	
+	/**
+	 * Reads a number in decimal or scientific notation
+	 * 
+	 * @return
+	 * @throws IOException if there isn't one
+	 */
+	double readNumber() throws IOException {
+		skipWhitespace();
+		
+		boolean negative = false;
+		if(pos < limit && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+			negative = buf.get(pos) == '-';
+			pos++;
+		}
+		
+		long mantissa = 0;
+		int exponent = 0,
+			digits = 0;
+		
+		// integer part
+		while(pos < limit && isDigit(buf.get(pos))) {
+			if(mantissa < 100_000_000_000_000_000L) mantissa = (mantissa * 10) + (buf.get(pos) - '0');
+			else exponent++;
+			
+			pos++;
+			digits++;
+		}
+		
+		// fraction
+		if(pos < limit && buf.get(pos) == '.') {
+			pos++;
+			
+			while(pos < limit && isDigit(buf.get(pos))) {
+				if(mantissa < 100_000_000_000_000_000L) {
+					mantissa = (mantissa * 10) + (buf.get(pos) - '0');
+					exponent--;
+				}
+				
+				pos++;
+				digits++;
+			}
+		}
+		
+		if(digits == 0) throw new IOException("expected a number at byte " + pos);
+		
+		// exponent
+		if(pos < limit && (buf.get(pos) == 'e' || buf.get(pos) == 'E')) {
+			pos++;
+			
+			boolean negativeExponent = false;
+			if(pos < limit && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+				negativeExponent = buf.get(pos) == '-';
+				pos++;
+			}
+			
+			int e = 0;
+			while(pos < limit && isDigit(buf.get(pos))) {
+				e = (e * 10) + (buf.get(pos++) - '0');
+			}
+			
+			exponent += negativeExponent ? -e : e;
+		}
+		
+		double value = mantissa;
+		if(exponent > 0) value *= Math.pow(10, exponent);
+		else if(exponent < 0) value /= Math.pow(10, -exponent);
+		
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * Moves past spaces, tabs, and line breaks
+	 */
+	void skipWhitespace() {
+		while(pos < limit && isWhitespace(buf.get(pos))) pos++;
+	}
+	
+	/**
+	 * @param start
+	 * @param end
+	 * @return the bytes from start to end as a String
+	 */
+	String ascii(int start, int end) {
+		char[] chars = new char[end - start];
+		
+		for(int i = start; i < end; i++) {
+			chars[i - start] = (char) (buf.get(i) & 0xFF);
+		}
+		
+		return new String(chars);
+	}
+	
+	static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+	
+	static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+}
@@ -0,0 +1,60 @@
+package genetics;
+
+import java.util.Random;
+
+/**
+ * Uniform crossover for real vectors
+ * Parents are taken two at a time from half as many selected as there are children, and each pair
+ * has four children. Each gene of a pair of children is either copied straight from the parents
+ * or swapped between them.
+ * 
+ * @author Alex
+ */
+public class UniformCrossover implements GeneticEngine.Crossover<VectorPopulation> {
+	
+	final double probability;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param probability probability each gene is swapped between the children
+	 */
+	public UniformCrossover(double probability) {
+		this.probability = probability;
+	}
+	
+	@Override
+	public int parents(int size) {
+		return size / 2;
+	}
+	
+	@Override
+	public void cross(GeneticEngine<VectorPopulation> engine, int start, int end, int chunk, Random r) {
+		VectorPopulation from = engine.population,
+						 to = engine.nextPopulation;
+		int[] selected = engine.selected;
+		int parents = parents(from.size);
+		
+		// children 2q and 2q + 1 are crossed together, by the chunk holding 2q
+		for(int q = (start + 1) / 2; 2 * q < end; q++) {
+			int a = 2 * q,
+				b = a + 1,
+				p = Math.min(q & ~1, Math.max(0, parents - 1)),
+				pa = selected[p],
+				pb = selected[Math.min(p + 1, Math.max(0, parents - 1))];
+			
+			for(int d = 0; d < from.dimensions; d++) {
+				double[] src = from.genes[d],
+						 dst = to.genes[d];
+				
+				boolean swap = r.nextFloat() <= probability;
+				
+				dst[a] = swap ? src[pb] : src[pa];
+				if(b < to.size) dst[b] = swap ? src[pa] : src[pb];
+			}
+			
+			to.evaluated[a] = false;
+			if(b < to.size) to.evaluated[b] = false;
+		}
+	}
+}
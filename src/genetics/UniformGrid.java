@@ -0,0 +1,436 @@
+package genetics;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over a set of points for nearest neighbor and radius queries
+ * Points are counting sorted by cell, so building is O(n) and rebuilding reuses the arrays
+ * 
+ * @author Alex
+ */
+public class UniformGrid {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Average number of points per cell the grid is sized for
+	public static final int POINTS_PER_CELL = 2;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	double[] xs, ys;
+	
+	int n;
+	
+	double minX, minY, cellSize;
+	
+	int cols, rows;
+	
+	// points in cell c are cellPoints[cellStart[c]] to cellPoints[cellStart[c + 1] - 1]
+	int[] cellStart,
+		  cellPoints,
+		  cellOf;
+	
+	// fittest point of each cell, -1 if empty, and the fitness it was found with. null until
+	// indexFitness() is called for the current build
+	int[] cellBest;
+	
+	double[] fitness;
+	
+	// fitness and position of the fittest point of each cell, -infinity if empty
+	double[] cellBestFitness,
+			 cellBestX,
+			 cellBestY;
+	
+	// coordinates and fitness in cellPoints order, so scanning a cell reads memory in order
+	double[] sortedXs,
+			 sortedYs,
+			 sortedFitness;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param xs x coordinate of each point
+	 * @param ys y coordinate of each point
+	 */
+	public UniformGrid(double[] xs, double[] ys) {
+		build(xs, ys, xs.length);
+	}
+	
+	/**
+	 * Rebuilds the grid over the first n points, reusing storage where it fits
+	 * 
+	 * @param xs x coordinate of each point
+	 * @param ys y coordinate of each point
+	 * @param n number of points
+	 */
+	public void build(double[] xs, double[] ys, int n) {
+		build(xs, ys, n, 0);
+	}
+	
+	/**
+	 * Rebuilds the grid over the first n points with cells of a given size, such as a fraction of
+	 * the radius that will be queried, reusing storage where it fits
+	 * 
+	 * @param xs x coordinate of each point
+	 * @param ys y coordinate of each point
+	 * @param n number of points
+	 * @param size width of each cell, 0 to size for POINTS_PER_CELL
+	 */
+	public void build(double[] xs, double[] ys, int n, double size) {
+		this.xs = xs;
+		this.ys = ys;
+		this.n = n;
+		this.fitness = null;
+		
+		// bounds
+		double maxX = n > 0 ? xs[0] : 0,
+			   maxY = n > 0 ? ys[0] : 0;
+		
+		minX = maxX;
+		minY = maxY;
+		
+		for(int i = 1; i < n; i++) {
+			if(xs[i] < minX) minX = xs[i];
+			else if(xs[i] > maxX) maxX = xs[i];
+			
+			if(ys[i] < minY) minY = ys[i];
+			else if(ys[i] > maxY) maxY = ys[i];
+		}
+		
+		// square cells sized so each holds a few points on average
+		double w = maxX - minX,
+			   h = maxY - minY;
+		
+		int cells = Math.max(1, n / POINTS_PER_CELL);
+		
+		if(size > 0) {
+			// no more cells than points, or the grid is mostly empty
+			cellSize = Math.max(size, Math.sqrt((w * h) / Math.max(1, n)));
+		} else if(w > 0 && h > 0) {
+			cellSize = Math.sqrt((w * h) / cells);
+		} else {
+			cellSize = Math.max(w, h) / cells;
+		}
+		
+		if(!(cellSize > 0)) cellSize = 1;
+		
+		cols = Math.min((int) (w / cellSize) + 1, cells + 1);
+		rows = Math.min((int) (h / cellSize) + 1, cells + 1);
+		
+		// counting sort points into cells
+		if(cellStart == null || cellStart.length < (cols * rows) + 1) cellStart = new int[(cols * rows) + 1];
+		else Arrays.fill(cellStart, 0, (cols * rows) + 1, 0);
+		
+		if(cellPoints == null || cellPoints.length < n) {
+			cellPoints = new int[n];
+			cellOf = new int[n];
+		}
+		
+		for(int i = 0; i < n; i++) {
+			int c = cell(cellX(xs[i]), cellY(ys[i]));
+			
+			cellOf[i] = c;
+			cellStart[c + 1]++;
+		}
+		
+		for(int c = 0; c < cols * rows; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		
+		// cellStart[c] is used as the cursor of cell c, which leaves it at the start of c + 1
+		for(int i = 0; i < n; i++) {
+			cellPoints[cellStart[cellOf[i]]++] = i;
+		}
+		
+		for(int c = cols * rows; c > 0; c--) {
+			cellStart[c] = cellStart[c - 1];
+		}
+		cellStart[0] = 0;
+	}
+	
+	/**
+	 * Finds the fittest point of each cell, for fittestWithinRadius()
+	 * Call after build(), O(n)
+	 * 
+	 * @param fitness fitness of each point, higher is fitter. Kept, not copied
+	 */
+	public void indexFitness(double[] fitness) {
+		int cells = cols * rows;
+		
+		if(cellBest == null || cellBest.length < cells) {
+			cellBest = new int[cells];
+			cellBestFitness = new double[cells];
+			cellBestX = new double[cells];
+			cellBestY = new double[cells];
+		}
+		
+		if(sortedXs == null || sortedXs.length < n) {
+			sortedXs = new double[n];
+			sortedYs = new double[n];
+			sortedFitness = new double[n];
+		}
+		
+		for(int j = 0; j < n; j++) {
+			int p = cellPoints[j];
+			
+			sortedXs[j] = xs[p];
+			sortedYs[j] = ys[p];
+			sortedFitness[j] = fitness[p];
+		}
+		
+		for(int c = 0; c < cells; c++) {
+			int best = -1;
+			
+			for(int j = cellStart[c]; j < cellStart[c + 1]; j++) {
+				if(best < 0 || sortedFitness[j] > sortedFitness[best]) best = j;
+			}
+			
+			if(best < 0) {
+				cellBest[c] = -1;
+				cellBestFitness[c] = Double.NEGATIVE_INFINITY;
+			} else {
+				cellBest[c] = cellPoints[best];
+				cellBestFitness[c] = sortedFitness[best];
+				cellBestX[c] = sortedXs[best];
+				cellBestY[c] = sortedYs[best];
+			}
+		}
+		
+		this.fitness = fitness;
+	}
+	
+	/**
+	 * Finds the fittest point within a radius of a location
+	 * Cells entirely inside the radius only look at their fittest point, and cells on the edge
+	 * are skipped if their fittest point can't beat the best so far, so dense populations stay
+	 * cheap
+	 * 
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @return index of the fittest point, -1 if there are none in range
+	 */
+	public int fittestWithinRadius(double x, double y, double radius) {
+		if(fitness == null) throw new IllegalStateException("indexFitness() wasn't called after build()");
+		
+		int x0 = cellX(x - radius),
+			x1 = cellX(x + radius),
+			y0 = cellY(y - radius),
+			y1 = cellY(y + radius),
+			best = -1;
+		
+		double r2 = radius * radius,
+			   bestFitness = Double.NEGATIVE_INFINITY;
+		
+		// cells inside the radius first, they're one look each and give a high bar for the
+		// cells on the edge to beat
+		for(int gy = y0; gy <= y1; gy++) {
+			for(int gx = x0; gx <= x1; gx++) {
+				int c = cell(gx, gy);
+				
+				if(cellBestFitness[c] > bestFitness && cellInside(gx, gy, x, y, r2)) {
+					best = cellBest[c];
+					bestFitness = cellBestFitness[c];
+				}
+			}
+		}
+		
+		for(int gy = y0; gy <= y1; gy++) {
+			for(int gx = x0; gx <= x1; gx++) {
+				int c = cell(gx, gy);
+				
+				if(cellBestFitness[c] <= bestFitness || cellInside(gx, gy, x, y, r2)) continue;
+				
+				// nothing else in the cell beats its fittest point
+				double bx = cellBestX[c] - x,
+					   by = cellBestY[c] - y;
+				
+				if((bx * bx) + (by * by) <= r2) {
+					best = cellBest[c];
+					bestFitness = cellBestFitness[c];
+					continue;
+				}
+				
+				for(int j = cellStart[c]; j < cellStart[c + 1]; j++) {
+					double dx = sortedXs[j] - x,
+						   dy = sortedYs[j] - y;
+					
+					if(sortedFitness[j] > bestFitness && (dx * dx) + (dy * dy) <= r2) {
+						best = cellPoints[j];
+						bestFitness = sortedFitness[j];
+					}
+				}
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * @return true if every point the cell can hold is within the radius
+	 */
+	boolean cellInside(int gx, int gy, double x, double y, double r2) {
+		// the last row and column also hold points past their edge
+		if(gx >= cols - 1 || gy >= rows - 1) return false;
+		
+		double left = minX + (gx * cellSize),
+			   top = minY + (gy * cellSize),
+			   dx = Math.max(Math.abs(left - x), Math.abs(left + cellSize - x)),
+			   dy = Math.max(Math.abs(top - y), Math.abs(top + cellSize - y));
+		
+		return (dx * dx) + (dy * dy) <= r2;
+	}
+	
+	/**
+	 * Finds the k nearest points to a location, nearest first
+	 * 
+	 * @param x
+	 * @param y
+	 * @param k maximum number of points to find
+	 * @param exclude a point to skip, such as the one being queried, or -1
+	 * @param out indices of the points found
+	 * @param outDist squared distances of the points found
+	 * @return number of points found
+	 */
+	public int nearest(double x, double y, int k, int exclude, int[] out, double[] outDist) {
+		if(k <= 0) return 0;
+		
+		int cx = cellX(x),
+			cy = cellY(y),
+			found = 0,
+			maxRing = Math.max(cols, rows);
+		
+		for(int r = 0; r <= maxRing; r++) {
+			// walk the ring of cells r away from the center
+			for(int gy = cy - r; gy <= cy + r; gy++) {
+				if(gy < 0 || gy >= rows) continue;
+				
+				boolean edgeRow = gy == cy - r || gy == cy + r;
+				
+				for(int gx = cx - r; gx <= cx + r; gx += (edgeRow || r == 0) ? 1 : 2 * r) {
+					if(gx < 0 || gx >= cols) continue;
+					
+					int c = cell(gx, gy);
+					
+					for(int j = cellStart[c]; j < cellStart[c + 1]; j++) {
+						int p = cellPoints[j];
+						if(p == exclude) continue;
+						
+						double dx = xs[p] - x,
+							   dy = ys[p] - y,
+							   d = (dx * dx) + (dy * dy);
+						
+						// keep the closest k in sorted order
+						if(found < k || d < outDist[found - 1]) {
+							int i = found < k ? found++ : found - 1;
+							
+							while(i > 0 && outDist[i - 1] > d) {
+								outDist[i] = outDist[i - 1];
+								out[i] = out[i - 1];
+								i--;
+							}
+							
+							outDist[i] = d;
+							out[i] = p;
+						}
+					}
+				}
+			}
+			
+			// anything in further rings is at least r cells away
+			double reach = r * cellSize;
+			if(found == k && outDist[found - 1] <= reach * reach) break;
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * Finds the points within a radius of a location, in no particular order
+	 * 
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param out indices of the points found, stops when full
+	 * @return number of points found
+	 */
+	public int withinRadius(double x, double y, double radius, int[] out) {
+		int x0 = cellX(x - radius),
+			x1 = cellX(x + radius),
+			y0 = cellY(y - radius),
+			y1 = cellY(y + radius),
+			found = 0;
+		
+		double r2 = radius * radius;
+		
+		for(int gy = y0; gy <= y1; gy++) {
+			for(int gx = x0; gx <= x1; gx++) {
+				int c = cell(gx, gy);
+				
+				for(int j = cellStart[c]; j < cellStart[c + 1]; j++) {
+					int p = cellPoints[j];
+					
+					double dx = xs[p] - x,
+						   dy = ys[p] - y;
+					
+					if((dx * dx) + (dy * dy) <= r2) {
+						if(found == out.length) return found;
+						out[found++] = p;
+					}
+				}
+			}
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * @param x
+	 * @return column holding x, clamped to the grid
+	 */
+	int cellX(double x) {
+		int c = (int) ((x - minX) / cellSize);
+		return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+	}
+	
+	/**
+	 * @param y
+	 * @return row holding y, clamped to the grid
+	 */
+	int cellY(double y) {
+		int c = (int) ((y - minY) / cellSize);
+		return c < 0 ? 0 : (c >= rows ? rows - 1 : c);
+	}
+	
+	/**
+	 * @param gx column
+	 * @param gy row
+	 * @return index of the cell
+	 */
+	int cell(int gx, int gy) {
+		return (gy * cols) + gx;
+	}
+	
+	/**
+	 * Points in cell order, so going through them in order visits points near each other together
+	 * 
+	 * @param j 0 to size() - 1
+	 * @return index of the jth point
+	 */
+	public int pointAt(int j) {
+		return cellPoints[j];
+	}
+	
+	/**
+	 * @return number of points in the grid
+	 */
+	public int size() {
+		return n;
+	}
+}
@@ -0,0 +1,57 @@
+package genetics;
+
+/**
+ * Fitness of a whole range of positions at once, for SIMD versions of the 2D optimizers' fitness
+ * Each has to give exactly the same fitness as the optimizer's fitness(x, y) on each position.
+ * 
+ * @author Alex
+ */
+interface VectorKernels {
+	
+	// null unless src-vector is compiled in and the JVM has the Vector API
+	VectorKernels INSTANCE = load();
+	
+	/**
+	 * LinearOptimizer fitness of a range of positions
+	 * 
+	 * @param xs x of each position
+	 * @param ys y of each position
+	 * @param start first position, inclusive
+	 * @param end last position, exclusive
+	 * @param xLow X position of the lower point of each line
+	 * @param xHigh X position of the upper point of each line
+	 * @param height y of the lower points
+	 * @param out fitness of each position
+	 */
+	void linear(double[] xs, double[] ys, int start, int end, int[] xLow, int[] xHigh, int height, double[] out);
+	
+	/**
+	 * PointOptimizer fitness of a range of positions
+	 * 
+	 * @param px x of each position
+	 * @param py y of each position
+	 * @param start first position, inclusive
+	 * @param end last position, exclusive
+	 * @param xs x of each target
+	 * @param ys y of each target
+	 * @param maxFitness most fitness a single target can give
+	 * @param out fitness of each position
+	 */
+	void point(double[] px, double[] py, int start, int end, int[] xs, int[] ys, double maxFitness, double[] out);
+	
+	/**
+	 * Loads VectorFitness by name, so src compiles on Java 8
+	 * 
+	 * @return the kernels, or null
+	 */
+	static VectorKernels load() {
+		try {
+			// only there on Java 16 and later, run with --add-modules jdk.incubator.vector
+			Class.forName("jdk.incubator.vector.DoubleVector", false, VectorKernels.class.getClassLoader());
+			
+			return (VectorKernels) Class.forName("genetics.VectorFitness").getDeclaredConstructor().newInstance();
+		} catch(ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package genetics;
+
+import java.util.Random;
+
+/**
+ * A population of vectors of real numbers inside a box, the real vector encoding
+ * Each gene is one array over the whole population, so genes[d][i] is gene d of individual i.
+ * Operators and fitness functions can then run down a gene of every individual at once.
+ * 
+ * @author Alex
+ */
+public class VectorPopulation extends Population {
+	
+	final int dimensions;
+	
+	final double[][] genes;
+	
+	// smallest and largest value of each gene
+	final double[] lower,
+				   upper;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param size number of individuals
+	 * @param lower smallest value of each gene
+	 * @param upper largest value of each gene
+	 * @param minimize true if lower fitness is better
+	 */
+	public VectorPopulation(int size, double[] lower, double[] upper, boolean minimize) {
+		super(size, minimize);
+		
+		if(lower.length != upper.length) throw new IllegalArgumentException("bounds have different dimensions");
+		
+		this.dimensions = lower.length;
+		this.lower = lower.clone();
+		this.upper = upper.clone();
+		
+		genes = new double[dimensions][size];
+	}
+	
+	/**
+	 * Replaces an individual with one anywhere in the box
+	 * 
+	 * @param i index of the individual
+	 * @param r
+	 */
+	@Override
+	public void randomize(int i, Random r) {
+		for(int d = 0; d < dimensions; d++) {
+			genes[d][i] = lower[d] + (float) (r.nextFloat() * (upper[d] - lower[d]));
+		}
+		
+		fitness[i] = 0;
+		evaluated[i] = false;
+	}
+	
+	@Override
+	protected void copyGenes(int to, Population from, int fromIndex) {
+		double[][] src = ((VectorPopulation) from).genes;
+		
+		for(int d = 0; d < dimensions; d++) {
+			genes[d][to] = src[d][fromIndex];
+		}
+	}
+	
+	/**
+	 * Moves an individual back inside the box
+	 * 
+	 * @param i
+	 */
+	public void clamp(int i) {
+		for(int d = 0; d < dimensions; d++) {
+			if(genes[d][i] < lower[d]) genes[d][i] = lower[d];
+			if(genes[d][i] > upper[d]) genes[d][i] = upper[d];
+		}
+	}
+	
+	/**
+	 * @param d
+	 * @return gene d of every individual, not a copy
+	 */
+	public double[] gene(int d) {
+		return genes[d];
+	}
+	
+	/**
+	 * @param i
+	 * @return a copy of the genes of individual i
+	 */
+	public double[] getVector(int i) {
+		double[] v = new double[dimensions];
+		for(int d = 0; d < dimensions; d++) v[d] = genes[d][i];
+		
+		return v;
+	}
+	
+	/**
+	 * Replaces the genes of an individual, marking it as needing evaluation
+	 * 
+	 * @param i
+	 * @param v
+	 */
+	public void setVector(int i, double[] v) {
+		if(v.length != dimensions) throw new IllegalArgumentException("vector has " + v.length + " genes, expected " + dimensions);
+		
+		for(int d = 0; d < dimensions; d++) genes[d][i] = v[d];
+		evaluated[i] = false;
+	}
+	
+	/**
+	 * @return root mean square distance of the individuals from their center
+	 */
+	public double spread() {
+		double ss = 0;
+		
+		for(int d = 0; d < dimensions; d++) {
+			double[] g = genes[d];
+			double c = 0;
+			
+			for(int i = 0; i < size; i++) c += g[i];
+			c /= size;
+			
+			for(int i = 0; i < size; i++) ss += (g[i] - c) * (g[i] - c);
+		}
+		
+		return Math.sqrt(ss / size);
+	}
+	
+	/**
+	 * @return the genes of each individual in turn, for checkpoints
+	 */
+	public double[] interleaved() {
+		double[] flat = new double[size * dimensions];
+		
+		for(int d = 0; d < dimensions; d++) {
+			for(int i = 0; i < size; i++) flat[(i * dimensions) + d] = genes[d][i];
+		}
+		
+		return flat;
+	}
+	
+	/**
+	 * Replaces every individual from genes laid out like interleaved(), marking them as needing
+	 * evaluation
+	 * 
+	 * @param flat
+	 */
+	public void setInterleaved(double[] flat) {
+		if(flat.length != size * dimensions) throw new IllegalArgumentException("expected " + (size * dimensions) + " genes, got " + flat.length);
+		
+		for(int d = 0; d < dimensions; d++) {
+			for(int i = 0; i < size; i++) genes[d][i] = flat[(i * dimensions) + d];
+		}
+		
+		invalidate();
+	}
+	
+	/**
+	 * @return number of genes in each individual
+	 */
+	public int dimensions() {
+		return dimensions;
+	}
+}
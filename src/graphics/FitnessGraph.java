@@ -1,5 +1,334 @@
 package graphics;
 
-public class FitnessGraph {
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 
+import javax.swing.JComponent;
+
+import genetics.GeneticsBase;
+
+/**
+ * Graphs best fitness, mean fitness and diversity over every generation so far
+ * The simulation thread records a generation into a ring buffer of primitives without locking.
+ * Painting drains the ring into a fixed number of buckets that each keep the min and max of the
+ * generations they cover, and when the buckets fill up neighbors are merged and each bucket covers
+ * twice as many generations. So memory and the time to paint stay the same no matter how many
+ * generations have run, and spikes don't disappear when zoomed out.
+ * 
+ * One thread records, the event thread paints.
+ * 
+ * @author Alex
+ */
+@SuppressWarnings("serial")
+public class FitnessGraph extends JComponent {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Generations the ring holds between paints, a power of two. Older ones are dropped if painting
+	// falls this far behind
+	static final int RING_SIZE = 1 << 16;
+	
+	// Buckets across the graph, a multiple of 2
+	static final int BUCKETS = 400;
+	
+	static final Color BEST_COLOR = new Color(0, 130, 0),
+					   MEAN_COLOR = Color.blue,
+					   DIVERSITY_COLOR = new Color(200, 120, 0);
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	static final int MASK = RING_SIZE - 1;
+	
+	// series in the ring and the buckets
+	static final int BEST = 0,
+					 MEAN = 1,
+					 DIVERSITY = 2,
+					 SERIES = 3;
+	
+	// ring, written by the recording thread
+	final double[] ring = new double[RING_SIZE * SERIES];
+	
+	// generations recorded, published after the values are written
+	volatile long head;
+	
+	// set to clear, seen by the next paint
+	volatile long clearAt = -1;
+	
+	// buckets, only touched while painting
+	final double[] min = new double[BUCKETS * SERIES],
+				   max = new double[BUCKETS * SERIES];
+	
+	int buckets;
+	
+	// generations per bucket, and in the bucket being filled
+	long span = 1,
+		 filling;
+	
+	// generations drained from the ring, the generation the graph starts at, and generations
+	// overwritten before they were drained
+	long tail,
+		 start,
+		 lost;
+	
+	double lastBest,
+		   lastMean,
+		   lastDiversity;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	public FitnessGraph(int width, int height) {
+		setPreferredSize(new Dimension(width, height));
+		setMinimumSize(getPreferredSize());
+		setOpaque(true);
+		setBackground(Color.white);
+	}
+	
+	/**
+	 * Records the current generation of a simulation
+	 * Call from the thread running it, after each generation
+	 * 
+	 * @param sim
+	 */
+	public void record(GeneticsBase sim) {
+		record(sim.getBestFitness(), sim.getMeanFitness(), sim.getDiversity());
+	}
+	
+	/**
+	 * Records a generation
+	 * 
+	 * @param best
+	 * @param mean
+	 * @param diversity
+	 */
+	public void record(double best, double mean, double diversity) {
+		long h = head;
+		int i = (int) (h & MASK) * SERIES;
+		
+		ring[i + BEST] = best;
+		ring[i + MEAN] = mean;
+		ring[i + DIVERSITY] = diversity;
+		
+		// volatile write publishes the values above
+		head = h + 1;
+	}
+	
+	/**
+	 * Forgets everything recorded so far, for when the simulation is reset
+	 * Safe from any thread
+	 */
+	public void clear() {
+		clearAt = head;
+		repaint();
+	}
+	
+	/**
+	 * Moves new generations from the ring into the buckets
+	 */
+	void drain() {
+		long c = clearAt;
+		if(c >= 0) {
+			clearAt = -1;
+			
+			buckets = 0;
+			span = 1;
+			filling = 0;
+			lost = 0;
+			tail = c;
+			start = c;
+		}
+		
+		long h = head;
+		
+		while(tail < h) {
+			int i = (int) (tail & MASK) * SERIES;
+			
+			double best = ring[i + BEST],
+				   mean = ring[i + MEAN],
+				   diversity = ring[i + DIVERSITY];
+			
+			// the writer lapped us, these values may be overwritten. Generations that are gone
+			// count towards the next one that isn't
+			long behind = head - tail;
+			if(behind >= RING_SIZE) {
+				long n = behind - RING_SIZE + 1;
+				
+				lost += n;
+				tail += n;
+				continue;
+			}
+			
+			lastBest = best;
+			lastMean = mean;
+			lastDiversity = diversity;
+			
+			add(best, mean, diversity, lost + 1);
+			lost = 0;
+			tail++;
+		}
+	}
+	
+	/**
+	 * Adds a generation to the buckets
+	 * 
+	 * @param best
+	 * @param mean
+	 * @param diversity
+	 * @param count number of generations it stands for
+	 */
+	void add(double best, double mean, double diversity, long count) {
+		while(count > 0) {
+			if(buckets == 0 || filling == span) {
+				if(buckets == BUCKETS) compact();
+				
+				int b = buckets * SERIES;
+				min[b + BEST] = max[b + BEST] = best;
+				min[b + MEAN] = max[b + MEAN] = mean;
+				min[b + DIVERSITY] = max[b + DIVERSITY] = diversity;
+				
+				buckets++;
+				filling = 0;
+			} else {
+				int b = (buckets - 1) * SERIES;
+				widen(b + BEST, best);
+				widen(b + MEAN, mean);
+				widen(b + DIVERSITY, diversity);
+			}
+			
+			long n = Math.min(count, span - filling);
+			filling += n;
+			count -= n;
+		}
+	}
+	
+	void widen(int i, double v) {
+		if(v < min[i]) min[i] = v;
+		if(v > max[i]) max[i] = v;
+	}
+	
+	/**
+	 * Merges neighboring buckets, halving how many there are
+	 */
+	void compact() {
+		for(int b = 0; b < buckets / 2; b++) {
+			for(int s = 0; s < SERIES; s++) {
+				int to = (b * SERIES) + s,
+					a = (2 * b * SERIES) + s,
+					c = a + SERIES;
+				
+				min[to] = Math.min(min[a], min[c]);
+				max[to] = Math.max(max[a], max[c]);
+			}
+		}
+		
+		buckets /= 2;
+		span *= 2;
+		
+		// every bucket was full, so the merged ones are too
+		filling = span;
+	}
+	
+	@Override
+	protected void paintComponent(Graphics g1d) {
+		drain();
+		
+		Graphics2D g = (Graphics2D) g1d;
+		int w = getWidth(),
+			h = getHeight();
+		
+		g.setColor(getBackground());
+		g.fillRect(0, 0, w, h);
+		
+		g.setColor(Color.black);
+		g.drawRect(0, 0, w - 1, h - 1);
+		
+		if(buckets == 0) {
+			g.drawString("no generations yet", 5, 15);
+			return;
+		}
+		
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		
+		// best and mean share an axis, diversity gets its own
+		double lo = Double.MAX_VALUE,
+			   hi = -Double.MAX_VALUE,
+			   dhi = 0;
+		
+		for(int b = 0; b < buckets; b++) {
+			int i = b * SERIES;
+			
+			lo = Math.min(lo, Math.min(min[i + BEST], min[i + MEAN]));
+			hi = Math.max(hi, Math.max(max[i + BEST], max[i + MEAN]));
+			dhi = Math.max(dhi, max[i + DIVERSITY]);
+		}
+		
+		if(hi <= lo) hi = lo + 1;
+		if(dhi <= 0) dhi = 1;
+		
+		int top = 20,
+			bottom = h - 20,
+			left = 5,
+			right = w - 5;
+		
+		// a bucket is a vertical bar from its min to its max, so nothing between pixels is lost
+		g.setStroke(new BasicStroke(1f));
+		plot(g, DIVERSITY, 0, dhi, left, right, top, bottom, DIVERSITY_COLOR);
+		plot(g, MEAN, lo, hi, left, right, top, bottom, MEAN_COLOR);
+		plot(g, BEST, lo, hi, left, right, top, bottom, BEST_COLOR);
+		
+		// labels
+		g.setColor(BEST_COLOR);
+		g.drawString(String.format("best %.2f", lastBest), 5, 14);
+		g.setColor(MEAN_COLOR);
+		g.drawString(String.format("mean %.2f", lastMean), 110, 14);
+		g.setColor(DIVERSITY_COLOR);
+		g.drawString(String.format("div %.3f", lastDiversity), 215, 14);
+		
+		g.setColor(Color.black);
+		g.drawString(String.format("%.1f - %.1f", lo, hi), 5, h - 5);
+		
+		String gens = (tail - start) + " gens";
+		g.drawString(gens, w - 5 - g.getFontMetrics().stringWidth(gens), h - 5);
+	}
+	
+	/**
+	 * Draws one series
+	 */
+	void plot(Graphics2D g, int series, double lo, double hi, int left, int right, int top, int bottom, Color color) {
+		g.setColor(color);
+		
+		// the buckets always fill at least half the width
+		double dx = (right - left) / (double) Math.max(BUCKETS / 2, buckets),
+			   dy = (bottom - top) / (hi - lo);
+		
+		int px = -1,
+			pMid = 0;
+		
+		for(int b = 0; b < buckets; b++) {
+			int i = (b * SERIES) + series,
+				x = left + (int) (b * dx),
+				yTop = bottom - (int) ((max[i] - lo) * dy),
+				yBottom = bottom - (int) ((min[i] - lo) * dy),
+				mid = (yTop + yBottom) / 2;
+			
+			g.drawLine(x, yTop, x, yBottom);
+			if(px >= 0) g.drawLine(px, pMid, x, mid);
+			
+			px = x;
+			pMid = mid;
+		}
+	}
 }
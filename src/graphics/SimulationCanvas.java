@@ -5,6 +5,10 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 
 import genetics.GeneticsBase;
+import genetics.RenderSnapshot;
+import genetics.SnapshotExchange;
+import metrics.Phase;
+import metrics.PhaseMetrics;
 
 /**
  * For all your graphics needs
@@ -16,24 +20,39 @@ public class SimulationCanvas extends Canvas {
 	
 	GeneticsBase sim;
 	
+	SnapshotExchange snapshots;
+	
 	/**
 	 * constructor
+	 * 
+	 * @param sim simulation, for its metrics
+	 * @param snapshots where the simulation publishes what to draw
 	 */
-	public SimulationCanvas(GeneticsBase sim) {
+	public SimulationCanvas(GeneticsBase sim, SnapshotExchange snapshots) {
 		this.sim = sim;
+		this.snapshots = snapshots;
 	}
 	
 	/**
 	 * Draws whatever we need to draw, probably a bunch of points
+	 * Draws the latest snapshot rather than the simulation, so it never waits on the simulation.
+	 * Synchronized because a snapshot given back to the exchange may be refilled, so only one
+	 * thread can be drawing at a time
 	 */
 	@Override
-	public void paint(Graphics g1d) {
+	public synchronized void paint(Graphics g1d) {
 		super.paint(g1d); // we probably need this
 		
 		// just slapp that into the second dimension
 		Graphics2D g = (Graphics2D) g1d;
 		
-		sim.draw(g);
+		long start = System.nanoTime();
+		
+		RenderSnapshot snapshot = snapshots.latest();
+		if(snapshot != null) snapshot.draw(g);
+		
+		PhaseMetrics metrics = sim.getMetrics();
+		if(metrics != null) metrics.phase(Phase.DRAW, start);
 		
 		// actually show
 		try {	//This may give a npe if the main thread is too slow
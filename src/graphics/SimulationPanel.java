@@ -5,11 +5,18 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.swing.JButton;
 import javax.swing.JPanel;
 
+import checkpoint.Checkpointer;
 import genetics.*;
+import metrics.PhaseMetrics;
 
 /**
  * For all your jpanel needs
@@ -20,15 +27,43 @@ import genetics.*;
 @SuppressWarnings("serial")
 public class SimulationPanel extends JPanel implements ActionListener {
 	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// File the Save and Load buttons use
+	static final String CHECKPOINT_FILE = "simulation.ckpt";
+	
+	// Frames drawn per second when not in real time
+	static final int FRAME_RATE = 15;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
 	GeneticsBase simulation;
 	
 	SimulationCanvas canvas;
 	
+	FitnessGraph graph;
+	
 	JButton toggleButton,
 			stepButton,
-			resetButton;
+			resetButton,
+			saveButton,
+			loadButton;
+	
+	volatile boolean simulationRunning;
+	
+	// things to do on the thread running the simulation, between generations
+	ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+	
+	// what the canvas draws, published by the thread running the simulation
+	SnapshotExchange snapshots = new SnapshotExchange();
 	
-	boolean simulationRunning;
+	Checkpointer checkpointer = new Checkpointer();
 	
 	/**
 	 * constructor
@@ -55,6 +90,11 @@ public class SimulationPanel extends JPanel implements ActionListener {
 		//simulation = new PointOptimizer(1000, new int[] {150, 350, 250}, new int[] {300, 300, 200});
 		simulation = new Salesman(35, 60, 5, 0.5, 0.2);
 		
+		// phase timings, readable from jconsole or a flight recording
+		PhaseMetrics metrics = new PhaseMetrics(simulation.getClass().getSimpleName());
+		metrics.register();
+		simulation.setMetrics(metrics);
+		
 		simulationRunning = false;
 		
 		// layout stuff to have column of controls on the left and sim on the right
@@ -84,14 +124,37 @@ public class SimulationPanel extends JPanel implements ActionListener {
 		gbc.gridy = 2;
 		add(resetButton, gbc);
 		
-		canvas = new SimulationCanvas(simulation);
+		saveButton = new JButton("Save"); // checkpoint to CHECKPOINT_FILE
+		saveButton.addActionListener(this);
+		saveButton.setActionCommand("save");
+		gbc.gridx = 0;
+		gbc.gridy = 3;
+		add(saveButton, gbc);
+		
+		loadButton = new JButton("Load"); // carry on from CHECKPOINT_FILE
+		loadButton.addActionListener(this);
+		loadButton.setActionCommand("load");
+		gbc.gridx = 0;
+		gbc.gridy = 4;
+		add(loadButton, gbc);
+		
+		snapshots.publish(simulation);
+		
+		canvas = new SimulationCanvas(simulation, snapshots);
 		canvas.setSize(500, 500);
 		canvas.setMaximumSize(canvas.getSize());
 		canvas.setBackground(Color.white);
 		gbc.gridx = 1;
 		gbc.gridy = 0;
-		gbc.gridheight = 3;
+		gbc.gridheight = 5;
 		add(canvas, gbc);
+		
+		// fitness over time, next to the simulation
+		graph = new FitnessGraph(400, 500);
+		gbc.gridx = 2;
+		gbc.gridy = 0;
+		gbc.gridheight = 5;
+		add(graph, gbc);
 	}
 	
 	/**
@@ -100,40 +163,129 @@ public class SimulationPanel extends JPanel implements ActionListener {
 	public void setupCanvas() {		
 		canvas.createBufferStrategy(2);
 		
-		// async canvas updater thread for running faster than real time
+		// async threads for running faster than real time, one simulating and one drawing, so
+		// neither waits on the other
 		if(!APBioSimulation.REAL_TIME) {
-			new Thread(() -> {
-				long lastTime = System.currentTimeMillis(),
-					 frameRate = 15;
-				
+			long frameNanos = 1000000000L / FRAME_RATE;
+			
+			Thread simulator = new Thread(() -> {
 				while(true) {
-					// step
+					runCommands();
+					
 					if(simulationRunning) {
-						for(int i = 0; i < 1000; i++) {
+						// step until it's time for a new frame
+						long frameEnd = System.nanoTime() + frameNanos;
+						
+						do {
 							simulation.runGeneration();
-						}
+							graph.record(simulation);
+						} while(simulationRunning && commands.isEmpty() && System.nanoTime() < frameEnd);
+						
+						snapshots.publish(simulation);
+					} else {
+						sleep(frameNanos / 1000000);
 					}
-					
+				}
+			}, "simulation");
+			
+			Thread renderer = new Thread(() -> {
+				long lastTime = System.currentTimeMillis();
+				
+				while(true) {
 					// draw
 					canvas.paint(canvas.getBufferStrategy().getDrawGraphics());
+					graph.repaint();
 					
 					// wait
-					try {
-						long newTime = System.currentTimeMillis(),
-							 delta = (lastTime + (1000 / frameRate)) - newTime;
-						lastTime = newTime;
-						
-						if(delta > 0) {
-							Thread.sleep(delta);
-						}
-					} catch (InterruptedException e) {
-						System.out.println("canvas updater interrupted");
-					}
+					long newTime = System.currentTimeMillis(),
+						 delta = (lastTime + (1000 / FRAME_RATE)) - newTime;
+					lastTime = newTime;
+					
+					if(delta > 0) sleep(delta);
 				}
-			}).start();
+			}, "renderer");
+			
+			simulator.setDaemon(true);
+			renderer.setDaemon(true);
+			simulator.start();
+			renderer.start();
+		}
+	}
+	
+	static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			System.out.println("canvas updater interrupted");
 		}
 	}
 	
+	/**
+	 * Publishes what the simulation looks like now, and draws it in real time mode
+	 * From the thread running the simulation
+	 */
+	void publish() {
+		snapshots.publish(simulation);
+		
+		if(APBioSimulation.REAL_TIME) {
+			canvas.paint(canvas.getBufferStrategy().getDrawGraphics());
+			graph.repaint();
+		}
+	}
+	
+	/**
+	 * Runs something on the thread running the simulation
+	 * 
+	 * @param command
+	 */
+	void onSimulationThread(Runnable command) {
+		if(APBioSimulation.REAL_TIME) command.run();
+		else commands.add(command);
+	}
+	
+	/**
+	 * Runs queued commands, from the simulation thread
+	 */
+	void runCommands() {
+		Runnable command;
+		while((command = commands.poll()) != null) command.run();
+	}
+	
+	/**
+	 * Checkpoints the simulation, writing in the background
+	 */
+	void save() {
+		Path file = Paths.get(CHECKPOINT_FILE);
+		CompletableFuture<Void> done = checkpointer.save(simulation, file);
+		
+		if(done == null) {
+			System.out.println("still saving the last checkpoint");
+			return;
+		}
+		
+		done.whenComplete((v, e) -> {
+			if(e == null) System.out.println("saved " + file.toAbsolutePath());
+			else System.out.println("couldn't save checkpoint: " + e);
+		});
+	}
+	
+	/**
+	 * Carries on from the last checkpoint
+	 */
+	void load() {
+		Path file = Paths.get(CHECKPOINT_FILE);
+		
+		try {
+			Checkpointer.load(simulation, file);
+			graph.clear();
+			System.out.println("loaded " + file.toAbsolutePath());
+		} catch(IOException e) {
+			System.out.println("couldn't load checkpoint: " + e.getMessage());
+		}
+		
+		publish();
+	}
+	
 	/**
 	 * action listener
 	 */
@@ -151,17 +303,30 @@ public class SimulationPanel extends JPanel implements ActionListener {
 				break;
 			
 			case "step":
-				for(int i = 0; i < 1; i++) {
-					simulation.runGeneration();
-				}
-				
-				if(APBioSimulation.REAL_TIME) {
-					canvas.paint(canvas.getBufferStrategy().getDrawGraphics());
-				}
+				onSimulationThread(() -> {
+					for(int i = 0; i < 1; i++) {
+						simulation.runGeneration();
+						graph.record(simulation);
+					}
+					
+					publish();
+				});
 				break;
 			
 			case "reset":
-				simulation.reset();
+				onSimulationThread(() -> {
+					simulation.reset();
+					graph.clear();
+					publish();
+				});
+				break;
+			
+			case "save":
+				onSimulationThread(this::save);
+				break;
+			
+			case "load":
+				onSimulationThread(this::load);
 				break;
 			
 			default:
@@ -0,0 +1,137 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in log-linear buckets: every power of two is split into 2^SUB_BITS equal
+ * buckets, so any value is off by at most 1 / 2^SUB_BITS and the histogram is a fixed size no
+ * matter how many values go in. Safe to record into from several threads.
+ * 
+ * @author Alex
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Buckets per power of two are 2^SUB_BITS. 3 gives at most 12.5% error
+	static final int SUB_BITS = 3;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	static final int SUB_COUNT = 1 << SUB_BITS,
+					 BUCKETS = (64 - SUB_BITS + 1) << SUB_BITS;
+	
+	final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	
+	final AtomicLong count = new AtomicLong(),
+					 sum = new AtomicLong(),
+					 max = new AtomicLong();
+	
+	/**
+	 * Adds a duration
+	 * 
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		if(nanos < 0) nanos = 0;
+		
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		
+		long m;
+		while(nanos > (m = max.get()) && !max.compareAndSet(m, nanos));
+	}
+	
+	/**
+	 * @param v
+	 * @return bucket v goes in
+	 */
+	static int bucket(long v) {
+		if(v < SUB_COUNT) return (int) v;
+		
+		int e = 63 - Long.numberOfLeadingZeros(v);
+		
+		return ((e - SUB_BITS + 1) << SUB_BITS) + (int) ((v >>> (e - SUB_BITS)) & (SUB_COUNT - 1));
+	}
+	
+	/**
+	 * @param b
+	 * @return largest value that goes in bucket b
+	 */
+	static long bucketTop(int b) {
+		if(b < SUB_COUNT) return b;
+		
+		int e = (b >>> SUB_BITS) + SUB_BITS - 1;
+		long low = ((long) (SUB_COUNT + (b & (SUB_COUNT - 1)))) << (e - SUB_BITS);
+		
+		return low + (1L << (e - SUB_BITS)) - 1;
+	}
+	
+	/**
+	 * @param p fraction of values, 0 to 1
+	 * @return value that fraction of the durations are at or below, rounded up to its bucket
+	 */
+	public long percentile(double p) {
+		long total = count.get();
+		if(total == 0) return 0;
+		
+		long target = Math.max(1, (long) Math.ceil(p * total)),
+			 seen = 0;
+		
+		for(int b = 0; b < BUCKETS; b++) {
+			seen += counts.get(b);
+			
+			if(seen >= target) return Math.min(bucketTop(b), max.get());
+		}
+		
+		return max.get();
+	}
+	
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+	
+	@Override
+	public double getMeanNanos() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+	
+	@Override
+	public long getP50Nanos() {
+		return percentile(0.5);
+	}
+	
+	@Override
+	public long getP90Nanos() {
+		return percentile(0.9);
+	}
+	
+	@Override
+	public long getP99Nanos() {
+		return percentile(0.99);
+	}
+	
+	@Override
+	public long getMaxNanos() {
+		return max.get();
+	}
+	
+	@Override
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+		
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+}
@@ -0,0 +1,23 @@
+package metrics;
+
+/**
+ * JMX view of a LatencyHistogram
+ * 
+ * @author Alex
+ */
+public interface LatencyHistogramMBean {
+	
+	public long getCount();
+	
+	public double getMeanNanos();
+	
+	public long getP50Nanos();
+	
+	public long getP90Nanos();
+	
+	public long getP99Nanos();
+	
+	public long getMaxNanos();
+	
+	public void reset();
+}
@@ -0,0 +1,15 @@
+package metrics;
+
+/**
+ * Parts of a generation that are timed separately
+ * 
+ * @author Alex
+ */
+public enum Phase {
+	FITNESS,
+	SELECT,
+	CROSS,
+	LOCAL_SEARCH,
+	MUTATE,
+	DRAW
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+/**
+ * Somewhere besides the histograms for phases and generations to go, like Flight Recorder
+ * 
+ * @author Alex
+ */
+interface PhaseEvents {
+	
+	/**
+	 * A phase of a generation finished
+	 * 
+	 * @param simulation
+	 * @param phase
+	 * @param generation
+	 * @param nanos time the phase took
+	 */
+	void phase(String simulation, Phase phase, long generation, long nanos);
+	
+	/**
+	 * A generation finished
+	 * 
+	 * @param simulation
+	 * @param generation
+	 * @param nanos time the generation took
+	 * @param allocated bytes allocated during the generation
+	 */
+	void generation(String simulation, long generation, long nanos, long allocated);
+}
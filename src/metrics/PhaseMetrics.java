@@ -0,0 +1,324 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Times the phases of each generation of a simulation
+ * Keeps a latency histogram per phase and for whole generations, generations per second, and
+ * bytes allocated per generation by the thread running it. Everything can be read over JMX once
+ * registered, and each phase and generation is also a Flight Recorder event when JFR is recording
+ * (genetics.Phase and genetics.Generation).
+ * 
+ * One thread runs generations, other threads may record DRAW and read.
+ * 
+ * @author Alex
+ */
+public class PhaseMetrics implements PhaseMetricsMBean {
+	
+	/*
+	 * PARAMETERS
+	 * Constants you can change
+	 */
+	// Generations per second is measured over windows this long, in nanoseconds
+	static final long RATE_WINDOW = 1000000000L;
+	
+	
+	/*
+	 * CODE
+	 * Change at your own risk
+	 */
+	
+	// Flight Recorder events, null if the JVM has no JFR or JfrEvents wasn't compiled
+	static final PhaseEvents EVENTS = jfrEvents();
+	
+	// null if the JVM can't count allocations per thread
+	static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+	
+	final String name;
+	
+	final LatencyHistogram[] phases;
+	
+	final LatencyHistogram generationTimes = new LatencyHistogram();
+	
+	// only written by the generation thread
+	volatile long generations,
+				  totalAllocated,
+				  lastAllocated;
+	
+	volatile double rate;
+	
+	// first generation's start and last generation's end, for a rate before a window is full
+	volatile long firstStart,
+				  lastEnd;
+	
+	long generationStart,
+		 allocationStart,
+		 windowStart,
+		 windowGenerations;
+	
+	List<ObjectName> registered = new ArrayList<>();
+	
+	/**
+	 * constructor
+	 * 
+	 * @param name name of the simulation, shown in JMX and JFR
+	 */
+	public PhaseMetrics(String name) {
+		this.name = name;
+		
+		phases = new LatencyHistogram[Phase.values().length];
+		for(int i = 0; i < phases.length; i++) {
+			phases[i] = new LatencyHistogram();
+		}
+	}
+	
+	/**
+	 * Marks the start of a generation
+	 * 
+	 * @return start time, for the first phase
+	 */
+	public long beginGeneration() {
+		allocationStart = allocatedBytes();
+		generationStart = System.nanoTime();
+		
+		return generationStart;
+	}
+	
+	/**
+	 * Records a phase that started at a given time and ends now
+	 * 
+	 * @param phase
+	 * @param start from System.nanoTime()
+	 * @return now, for the next phase
+	 */
+	public long phase(Phase phase, long start) {
+		long now = System.nanoTime();
+		
+		phases[phase.ordinal()].record(now - start);
+		if(EVENTS != null) EVENTS.phase(name, phase, generations, now - start);
+		
+		return now;
+	}
+	
+	/**
+	 * Marks the end of a generation
+	 */
+	public void endGeneration() {
+		long now = System.nanoTime(),
+			 nanos = now - generationStart,
+			 allocated = ALLOCATIONS == null ? 0 : allocatedBytes() - allocationStart;
+		
+		generationTimes.record(nanos);
+		
+		lastAllocated = allocated;
+		totalAllocated += allocated;
+		generations++;
+		
+		if(firstStart == 0) firstStart = generationStart;
+		lastEnd = now;
+		
+		// rate over the last full window
+		if(windowGenerations == 0 && windowStart == 0) windowStart = generationStart;
+		windowGenerations++;
+		
+		if(now - windowStart >= RATE_WINDOW) {
+			rate = windowGenerations * 1e9 / (now - windowStart);
+			windowStart = now;
+			windowGenerations = 0;
+		}
+		
+		if(EVENTS != null) EVENTS.generation(name, generations, nanos, allocated);
+	}
+	
+	/**
+	 * @return bytes the calling thread has allocated so far, 0 if unknown
+	 */
+	static long allocatedBytes() {
+		return ALLOCATIONS == null ? 0 : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/**
+	 * @param phase
+	 * @return histogram of the phase
+	 */
+	public LatencyHistogram getPhase(Phase phase) {
+		return phases[phase.ordinal()];
+	}
+	
+	/**
+	 * @return histogram of whole generations
+	 */
+	public LatencyHistogram getGenerationTimes() {
+		return generationTimes;
+	}
+	
+	@Override
+	public long getGenerations() {
+		return generations;
+	}
+	
+	@Override
+	public double getGenerationsPerSecond() {
+		if(rate > 0) return rate;
+		
+		// not a full window yet
+		long elapsed = lastEnd - firstStart;
+		return elapsed <= 0 ? 0 : generations * 1e9 / elapsed;
+	}
+	
+	@Override
+	public double getAllocatedBytesPerGeneration() {
+		long g = generations;
+		return g == 0 ? 0 : (double) totalAllocated / g;
+	}
+	
+	@Override
+	public long getLastAllocatedBytes() {
+		return lastAllocated;
+	}
+	
+	@Override
+	public double getMeanGenerationNanos() {
+		return generationTimes.getMeanNanos();
+	}
+	
+	@Override
+	public long getP99GenerationNanos() {
+		return generationTimes.getP99Nanos();
+	}
+	
+	@Override
+	public String summary() {
+		StringBuilder sb = new StringBuilder();
+		
+		sb.append(String.format("%-13s %10s %12s %12s %12s %12s%n", name, "count", "mean us", "p50 us", "p99 us", "max us"));
+		
+		for(Phase p : Phase.values()) {
+			LatencyHistogram h = phases[p.ordinal()];
+			if(h.getCount() > 0) line(sb, p.name().toLowerCase(), h);
+		}
+		
+		line(sb, "generation", generationTimes);
+		
+		sb.append(String.format("%.1f gens/s, %.0f bytes allocated per generation%n", getGenerationsPerSecond(), getAllocatedBytesPerGeneration()));
+		
+		return sb.toString();
+	}
+	
+	static void line(StringBuilder sb, String label, LatencyHistogram h) {
+		sb.append(String.format("%-13s %10d %12.2f %12.2f %12.2f %12.2f%n", label, h.getCount(), h.getMeanNanos() / 1000, h.getP50Nanos() / 1000.0, h.getP99Nanos() / 1000.0, h.getMaxNanos() / 1000.0));
+	}
+	
+	@Override
+	public void reset() {
+		for(LatencyHistogram h : phases) h.reset();
+		generationTimes.reset();
+		
+		generations = 0;
+		totalAllocated = 0;
+		lastAllocated = 0;
+		rate = 0;
+		firstStart = 0;
+	}
+	
+	/**
+	 * Registers these metrics and a bean per phase with the platform MBean server, under
+	 * genetics:type=PhaseMetrics,name=[name]
+	 * Beans already registered under the same name are replaced
+	 */
+	public synchronized void register() {
+		unregister();
+		
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		String base = "genetics:type=PhaseMetrics,name=" + name.replaceAll("[,=:*?\"]", "_");
+		
+		try {
+			registerAs(server, this, new ObjectName(base));
+			
+			for(Phase p : Phase.values()) {
+				registerAs(server, phases[p.ordinal()], new ObjectName(base + ",phase=" + p.name().toLowerCase()));
+			}
+			
+			registerAs(server, generationTimes, new ObjectName(base + ",phase=generation"));
+		} catch(JMException e) {
+			throw new IllegalStateException("couldn't register metrics for " + name, e);
+		}
+	}
+	
+	void registerAs(MBeanServer server, Object bean, ObjectName objectName) throws JMException {
+		if(server.isRegistered(objectName)) server.unregisterMBean(objectName);
+		
+		server.registerMBean(bean, objectName);
+		registered.add(objectName);
+	}
+	
+	/**
+	 * Removes everything register() added
+	 */
+	public synchronized void unregister() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		
+		for(ObjectName n : registered) {
+			try {
+				if(server.isRegistered(n)) server.unregisterMBean(n);
+			} catch(JMException e) {
+				// gone already
+			}
+		}
+		
+		registered.clear();
+	}
+	
+	/**
+	 * @return name of the simulation
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	static boolean classExists(String name) {
+		try {
+			Class.forName(name, false, PhaseMetrics.class.getClassLoader());
+			return true;
+		} catch(ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Loads JfrEvents by name, so src compiles without jdk.jfr
+	 * 
+	 * @return the events, or null
+	 */
+	static PhaseEvents jfrEvents() {
+		if(!classExists("jdk.jfr.Event")) return null;
+		
+		try {
+			return (PhaseEvents) Class.forName("metrics.JfrEvents").getDeclaredConstructor().newInstance();
+		} catch(ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+	
+	static com.sun.management.ThreadMXBean allocationBean() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			
+			if(!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+			
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+			if(!sun.isThreadAllocatedMemorySupported()) return null;
+			if(!sun.isThreadAllocatedMemoryEnabled()) sun.setThreadAllocatedMemoryEnabled(true);
+			
+			return sun;
+		} catch(LinkageError | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package metrics;
+
+/**
+ * JMX view of PhaseMetrics
+ * Per phase latencies are registered as their own LatencyHistogram beans
+ * 
+ * @author Alex
+ */
+public interface PhaseMetricsMBean {
+	
+	public long getGenerations();
+	
+	public double getGenerationsPerSecond();
+	
+	public double getAllocatedBytesPerGeneration();
+	
+	public long getLastAllocatedBytes();
+	
+	public double getMeanGenerationNanos();
+	
+	public long getP99GenerationNanos();
+	
+	public String summary();
+	
+	public void reset();
+}
@@ -0,0 +1,344 @@
+package runner;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import checkpoint.Checkpointer;
+import genetics.DistanceProvider;
+import genetics.GeneticsBase;
+import genetics.IslandModel;
+import genetics.LinearOptimizer;
+import genetics.Migratable;
+import genetics.MigrationTopology;
+import genetics.PointOptimizer;
+import genetics.Salesman;
+import genetics.SelectionScheme;
+import genetics.TspInstance;
+import metrics.PhaseMetrics;
+
+/**
+ * Runs a simulation without a window and prints how it went
+ * Settings are key=value arguments, or come from a properties file given with --config. Arguments
+ * override the file.
+ * 
+ * problem			salesman, linear, or point
+ * generations		generations to run (per island)
+ * seconds			run for this long instead of a number of generations
+ * report			generations between progress lines, 0 for none
+ * islands			more than 1 runs an IslandModel, one thread per island
+ * interval, migrants, topology	island migration settings
+ * metrics			true to time each phase, printed at the end and registered over JMX
+ * checkpoint		file to checkpoint to every checkpointEvery generations and at the end
+ * resume			checkpoint file to carry on from
+ * (checkpoints are for a single population, not islands)
+ * 
+ * salesman: instance (file.tsp or random:cities[:seed]), population, elites, eliteProb, mutProb,
+ * threads, localSearch, selection, tournament, distances
+ * linear: population, xLow, xHigh (comma separated)
+ * point: population, xs, ys (comma separated)
+ * 
+ * @author Alex
+ */
+public class HeadlessRunner {
+	
+	final Properties config;
+	
+	/**
+	 * constructor
+	 * 
+	 * @param config
+	 */
+	public HeadlessRunner(Properties config) {
+		this.config = config;
+	}
+	
+	/**
+	 * Builds the problem from the config and runs it
+	 * 
+	 * @throws Exception
+	 */
+	public void run() throws Exception {
+		String problem = get("problem", "salesman");
+		
+		switch(problem) {
+			case "salesman":
+				TspInstance instance = TspInstance.fromSpec(get("instance", "random:35"));
+				System.out.println("salesman on " + instance.getName() + " with " + instance.getDimension() + " cities");
+				
+				run((IslandModel.IslandFactory<Salesman>) i -> salesman(instance));
+				break;
+			
+			case "linear":
+				run((IslandModel.IslandFactory<LinearOptimizer>) i -> new LinearOptimizer(getInt("population", 400), getInts("xLow", "0,100,400,500"), getInts("xHigh", "100,0,500,400")));
+				break;
+			
+			case "point":
+				run((IslandModel.IslandFactory<PointOptimizer>) i -> new PointOptimizer(getInt("population", 1000), getInts("xs", "150,350,250"), getInts("ys", "300,300,200")));
+				break;
+			
+			default:
+				throw new IllegalArgumentException("unknown problem " + problem);
+		}
+	}
+	
+	/**
+	 * Makes a Salesman from the config
+	 * 
+	 * @param instance
+	 * @return
+	 */
+	Salesman salesman(TspInstance instance) {
+		Salesman s = new Salesman(instance, getInt("population", 60), getInt("elites", 5), getDouble("eliteProb", 0.5), getDouble("mutProb", 0.2));
+		
+		s.setDistanceMode(DistanceProvider.Mode.valueOf(get("distances", "AUTO").toUpperCase()));
+		s.setSelectionScheme(SelectionScheme.valueOf(get("selection", "TOURNAMENT").toUpperCase()));
+		s.setTournamentSize(getInt("tournament", 8));
+		s.setLocalSearch(getBoolean("localSearch", false));
+		s.setThreads(getInt("threads", 1));
+		
+		return s;
+	}
+	
+	/**
+	 * Runs on one population or on islands
+	 * 
+	 * @param factory
+	 * @throws IOException if resuming fails
+	 * @throws InterruptedException
+	 */
+	<P extends GeneticsBase & Migratable<M>, M> void run(IslandModel.IslandFactory<P> factory) throws IOException, InterruptedException {
+		int islands = getInt("islands", 1);
+		
+		if(islands > 1) {
+			IslandModel<P, M> model = new IslandModel<>(islands, factory);
+			
+			for(int i = 0; i < islands; i++) {
+				attachMetrics(model.getIsland(i), "island-" + i);
+			}
+			
+			runIslands(model);
+			
+			for(int i = 0; i < islands; i++) {
+				printMetrics(model.getIsland(i));
+			}
+		} else {
+			P sim = factory.create(0);
+			attachMetrics(sim, get("problem", "salesman"));
+			
+			String resume = get("resume", "");
+			if(!resume.isEmpty()) {
+				Checkpointer.load(sim, Paths.get(resume));
+				System.out.println("resumed from " + resume);
+			}
+			
+			runSingle(sim);
+			printMetrics(sim);
+		}
+	}
+	
+	/**
+	 * Times the phases of a simulation if metrics are turned on
+	 * 
+	 * @param sim
+	 * @param name
+	 */
+	void attachMetrics(GeneticsBase sim, String name) {
+		if(!getBoolean("metrics", false)) return;
+		
+		PhaseMetrics metrics = new PhaseMetrics(name);
+		metrics.register();
+		sim.setMetrics(metrics);
+	}
+	
+	/**
+	 * Prints phase timings, if there are any
+	 * 
+	 * @param sim
+	 */
+	static void printMetrics(GeneticsBase sim) {
+		if(sim.getMetrics() != null) System.out.print(sim.getMetrics().summary());
+	}
+	
+	/**
+	 * Runs one population on this thread
+	 * 
+	 * @param sim
+	 * @throws IOException if the last checkpoint can't be written
+	 */
+	<P extends GeneticsBase & Migratable<M>, M> void runSingle(P sim) throws IOException {
+		long generations = getLong("generations", 10000),
+			 report = getLong("report", 1000),
+			 budget = (long) (getDouble("seconds", 0) * 1e9),
+			 start = System.nanoTime(),
+			 done = 0;
+		
+		String checkpointFile = get("checkpoint", "");
+		Path checkpoint = checkpointFile.isEmpty() ? null : Paths.get(checkpointFile);
+		long checkpointEvery = getLong("checkpointEvery", 0);
+		
+		Checkpointer checkpointer = new Checkpointer();
+		CompletableFuture<Void> writing = null;
+		
+		while(budget > 0 ? System.nanoTime() - start < budget : done < generations) {
+			sim.runGeneration();
+			done++;
+			
+			if(report > 0 && done % report == 0) {
+				report(done, System.nanoTime() - start, best(sim));
+			}
+			
+			// skipped if the last one is still being written
+			if(checkpoint != null && checkpointEvery > 0 && done % checkpointEvery == 0) {
+				CompletableFuture<Void> w = checkpointer.save(sim, checkpoint);
+				if(w != null) writing = w;
+			}
+		}
+		
+		finish(done, System.nanoTime() - start, best(sim));
+		
+		if(checkpoint != null) {
+			// let the background write finish so it can't land on top of this one
+			if(writing != null) writing.exceptionally(e -> null).join();
+			
+			Checkpointer.saveNow(sim, checkpoint);
+			System.out.println("checkpointed to " + checkpoint);
+		}
+		
+		checkpointer.shutdown();
+	}
+	
+	/**
+	 * Runs islands on their own threads
+	 * 
+	 * @param model
+	 * @throws InterruptedException
+	 */
+	<P extends GeneticsBase & Migratable<M>, M> void runIslands(IslandModel<P, M> model) throws InterruptedException {
+		model.setInterval(getInt("interval", IslandModel.DEFAULT_INTERVAL));
+		model.setMigrants(getInt("migrants", IslandModel.DEFAULT_MIGRANTS));
+		model.setTopology(MigrationTopology.valueOf(get("topology", "RING").toUpperCase()));
+		
+		double seconds = getDouble("seconds", 0);
+		long start = System.nanoTime();
+		
+		if(seconds > 0) {
+			model.start();
+			
+			// report as it goes, the islands don't need this thread
+			long reportMillis = Math.max(100, getLong("reportMillis", 1000)),
+				 end = start + (long) (seconds * 1e9);
+			
+			while(System.nanoTime() < end) {
+				Thread.sleep(Math.min(reportMillis, Math.max(1, (end - System.nanoTime()) / 1000000)));
+				report(model.getTotalGenerations(), System.nanoTime() - start, model.getBestFitness());
+			}
+			
+			model.stop();
+		} else {
+			model.run(getLong("generations", 10000));
+		}
+		
+		finish(model.getTotalGenerations(), System.nanoTime() - start, model.getBestFitness());
+	}
+	
+	/**
+	 * @param sim
+	 * @return fitness of the best individual in the population
+	 */
+	static <M> double best(Migratable<M> sim) {
+		List<M> best = sim.emigrants(1);
+		
+		return best.isEmpty() ? Double.NaN : sim.fitness(best.get(0));
+	}
+	
+	/**
+	 * Prints a progress line
+	 */
+	static void report(long generations, long nanos, double best) {
+		System.out.printf("%12d gens %10.2f s %12.1f gens/s   best %.4f%n", generations, nanos / 1e9, generations / (nanos / 1e9), best);
+	}
+	
+	/**
+	 * Prints the result
+	 */
+	static void finish(long generations, long nanos, double best) {
+		System.out.printf("done: %d generations in %.3f s (%.1f gens/s), best %.4f%n", generations, nanos / 1e9, generations / (nanos / 1e9), best);
+	}
+	
+	String get(String key, String def) {
+		return config.getProperty(key, def).trim();
+	}
+	
+	int getInt(String key, int def) {
+		return Integer.parseInt(get(key, Integer.toString(def)));
+	}
+	
+	long getLong(String key, long def) {
+		return Long.parseLong(get(key, Long.toString(def)));
+	}
+	
+	double getDouble(String key, double def) {
+		return Double.parseDouble(get(key, Double.toString(def)));
+	}
+	
+	boolean getBoolean(String key, boolean def) {
+		return Boolean.parseBoolean(get(key, Boolean.toString(def)));
+	}
+	
+	int[] getInts(String key, String def) {
+		String[] parts = get(key, def).split(",");
+		int[] values = new int[parts.length];
+		
+		for(int i = 0; i < parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * Reads --config file and key=value arguments
+	 * 
+	 * @param args
+	 * @return
+	 * @throws IOException
+	 */
+	public static Properties parseArgs(String[] args) throws IOException {
+		Properties config = new Properties();
+		
+		// file first so arguments override it
+		for(int i = 0; i < args.length - 1; i++) {
+			if(args[i].equals("--config")) {
+				try(InputStream in = new FileInputStream(args[i + 1])) {
+					config.load(in);
+				}
+			}
+		}
+		
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("--config")) {
+				i++;
+			} else {
+				int eq = args[i].indexOf('=');
+				if(eq < 0) throw new IllegalArgumentException("expected key=value, got " + args[i]);
+				
+				config.setProperty(args[i].substring(0, eq), args[i].substring(eq + 1));
+			}
+		}
+		
+		return config;
+	}
+	
+	// main that runs things, without a window
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		
+		new HeadlessRunner(parseArgs(args)).run();
+	}
+}